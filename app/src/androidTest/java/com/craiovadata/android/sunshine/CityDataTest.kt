@@ -0,0 +1,86 @@
+package com.craiovadata.android.sunshine
+
+import android.os.Debug
+import android.os.SystemClock
+import android.text.format.DateFormat
+import android.util.Log
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import org.junit.runner.RunWith
+import java.text.SimpleDateFormat
+import java.util.Date
+import java.util.Locale
+
+/**
+ * Compares [CityData.formatCityTime] with the SimpleDateFormat per call it replaced, on the
+ * patterns the cards use.
+ */
+@RunWith(AndroidJUnit4::class)
+class CityDataTest {
+
+    @Test
+    fun formatsLikeSimpleDateFormat() {
+        // Every 3 hours over a year, so both DST transitions are crossed
+        var millis = START
+        while (millis < START + YEAR) {
+            PATTERNS.forEach { pattern ->
+                assertEquals(legacyFormat(pattern, millis), CityData.formatCityTime(pattern, millis))
+            }
+            millis += 3 * HOUR
+        }
+    }
+
+    @Test
+    fun hourMinuteFollowsTheLocale() {
+        val pattern = DateFormat.getBestDateTimePattern(Locale.getDefault(), "HH mm")
+        assertEquals(CityData.formatCityTime(pattern, START), CityData.formatCityHourMinute(START))
+    }
+
+    @Test
+    fun cheaperThanSimpleDateFormat() {
+        // Warm up both paths, class loading and the JIT allocate too
+        repeat(100) { i ->
+            legacyFormat("HH:mm", START + i * HOUR)
+            CityData.formatCityTime("HH:mm", START + i * HOUR)
+        }
+
+        val legacy = measure { i -> legacyFormat("HH:mm", START + i * HOUR) }
+        val cached = measure { i -> CityData.formatCityTime("HH:mm", START + i * HOUR) }
+
+        Log.i(TAG, "SimpleDateFormat: ${legacy.nanos / RUNS} ns, ${legacy.bytes / RUNS} bytes per call")
+        Log.i(TAG, "formatCityTime: ${cached.nanos / RUNS} ns, ${cached.bytes / RUNS} bytes per call")
+        assertTrue("legacy ${legacy.bytes} bytes, cached ${cached.bytes} bytes", cached.bytes < legacy.bytes)
+    }
+
+    private class Cost(val nanos: Long, val bytes: Long)
+
+    private fun measure(block: (Int) -> Unit): Cost {
+        val bytesBefore = Debug.getRuntimeStat("art.gc.bytes-allocated").toLong()
+        val startedAt = SystemClock.elapsedRealtimeNanos()
+        for (i in 0 until RUNS) block(i)
+        val nanos = SystemClock.elapsedRealtimeNanos() - startedAt
+        return Cost(nanos, Debug.getRuntimeStat("art.gc.bytes-allocated").toLong() - bytesBefore)
+    }
+
+    /* How CityData formatted a date before the formatters were cached */
+    private fun legacyFormat(pattern: String, millis: Long): String {
+        val formatter = SimpleDateFormat(pattern, Locale.getDefault())
+        formatter.timeZone = CityData.cityTimeZone
+        return formatter.format(Date(millis))
+    }
+
+    private companion object {
+        const val TAG = "CityDataTest"
+        const val RUNS = 2000
+        const val START = 1577836800000L // 2020-01-01T00:00Z
+        const val HOUR = 60 * 60 * 1000L
+        const val YEAR = 366 * 24 * HOUR
+        // Graph, days card, logEntries and the details card sunrise / sunset
+        val PATTERNS = arrayOf(
+            "HH:mm", "EEEE", "HH:mm  dd MMM",
+            DateFormat.getBestDateTimePattern(Locale.getDefault(), "HH mm")
+        )
+    }
+}
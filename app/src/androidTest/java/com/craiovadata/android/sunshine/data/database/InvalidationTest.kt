@@ -0,0 +1,77 @@
+package com.craiovadata.android.sunshine.data.database
+
+import androidx.room.InvalidationTracker
+import androidx.room.Room
+import androidx.test.core.app.ApplicationProvider
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import com.craiovadata.android.sunshine.ui.models.WeatherEntry
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+
+/**
+ * Counts how many times observers of the weather table are invalidated by a forecast sync.
+ */
+@RunWith(AndroidJUnit4::class)
+class InvalidationTest {
+
+    private lateinit var db: MyDatabase
+    private lateinit var dao: WeatherDao
+    private var invalidations = 0
+
+    private val observer = object : InvalidationTracker.Observer("weather") {
+        override fun onInvalidated(tables: MutableSet<String>) {
+            invalidations++
+        }
+    }
+
+    @Before
+    fun createDb() {
+        // Direct executors, so the tracker notifies before the write returns
+        db = Room.inMemoryDatabaseBuilder(ApplicationProvider.getApplicationContext(), MyDatabase::class.java)
+            .setQueryExecutor { it.run() }
+            .setTransactionExecutor { it.run() }
+            .allowMainThreadQueries()
+            .build()
+        dao = db.weatherDao()!!
+        // A previous sync, old enough to be deleted by the next one
+        dao.insertWeather(*forecast(NOW - 10 * HOUR))
+        db.invalidationTracker.addObserver(observer)
+    }
+
+    @After
+    fun closeDb() {
+        db.invalidationTracker.removeObserver(observer)
+        db.close()
+    }
+
+    // What Repository.ingest does with one forecast batch
+    @Test
+    fun forecastIngestInvalidatesOnce() {
+        dao.inTransaction {
+            dao.replaceOldWeather(NOW - HOUR, *forecast(NOW))
+        }
+
+        assertEquals(1, invalidations)
+    }
+
+    // The delete and the insert made on their own, as before
+    @Test
+    fun separateWritesInvalidateTwice() {
+        dao.deleteOldWeather(NOW - HOUR)
+        dao.insertWeather(*forecast(NOW))
+
+        assertEquals(2, invalidations)
+    }
+
+    private fun forecast(from: Long) = Array(40) { i ->
+        WeatherEntry(800, from + i * 3 * HOUR, 20.0, 50.0, 1010.0, 3.0, 180.0, 0, WeatherEntry.NON_CURRENT_WEATHER)
+    }
+
+    private companion object {
+        const val NOW = 1600005600000L
+        const val HOUR = 60 * 60 * 1000L
+    }
+}
@@ -0,0 +1,90 @@
+package com.craiovadata.android.sunshine.data.database
+
+import androidx.room.testing.MigrationTestHelper
+import androidx.sqlite.db.framework.FrameworkSQLiteOpenHelperFactory
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import androidx.test.platform.app.InstrumentationRegistry
+import com.craiovadata.android.sunshine.CityData
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Rule
+import org.junit.Test
+import org.junit.runner.RunWith
+
+/**
+ * Runs the schema migrations of [MyDatabase] on a database created from the exported schemas
+ * in app/schemas, and checks the stored rows survive them.
+ */
+@RunWith(AndroidJUnit4::class)
+class MigrationTest {
+
+    @get:Rule
+    val helper = MigrationTestHelper(
+        InstrumentationRegistry.getInstrumentation(),
+        MyDatabase::class.java.canonicalName,
+        FrameworkSQLiteOpenHelperFactory()
+    )
+
+    @Test
+    fun migrate9To12() {
+        helper.createDatabase(TEST_DB, 9).apply {
+            execSQL(
+                "INSERT INTO weather (date, weatherId, temperature, humidity, pressure, wind, degrees, " +
+                        "lat, lon, iconCodeOWM, isCurrentWeather, cityName, description, sunrise, sunset, dt) " +
+                        "VALUES ($DATE, 500, 21.5, 60.0, 1012.0, 3.5, 270.0, 34.05, -118.24, '10n', 1, " +
+                        "'Los Angeles', 'light rain', 1600000000, 1600040000, 1600010000)"
+            )
+            execSQL(
+                "INSERT INTO weather (date, weatherId, temperature, humidity, pressure, wind, degrees, " +
+                        "lat, lon, iconCodeOWM, isCurrentWeather, cityName, description, sunrise, sunset, dt) " +
+                        "VALUES (${DATE + 3 * HOUR}, 800, 25.0, 40.0, 1010.0, 2.0, 90.0, 34.05, -118.24, 'xx', 0, " +
+                        "'', '', 0, 0, 0)"
+            )
+            execSQL(
+                "INSERT INTO webcams (id, title, updateDate, previewUrl) " +
+                        "VALUES ('1234', 'Santa Monica', $DATE, 'https://example.com/1234.jpg')"
+            )
+            close()
+        }
+
+        val db = helper.runMigrationsAndValidate(TEST_DB, 12, true, *Migrations.ALL)
+
+        db.query("SELECT date, weatherId, temperature, iconCode, isCurrentWeather, localHour, localDay, sunrise " +
+                "FROM weather ORDER BY date").use { cursor ->
+            assertEquals(2, cursor.count)
+
+            cursor.moveToFirst()
+            val cityDateTime = CityData.getCityDateTime(DATE)
+            assertEquals(DATE, cursor.getLong(0))
+            assertEquals(500, cursor.getInt(1))
+            assertEquals(21.5, cursor.getDouble(2), 0.0)
+            assertEquals(ICON_10N, cursor.getInt(3))
+            assertEquals(1, cursor.getInt(4))
+            assertEquals(cityDateTime.hour, cursor.getInt(5))
+            assertEquals(cityDateTime.toLocalDate().toEpochDay(), cursor.getLong(6))
+            assertEquals(1600000000L, cursor.getLong(7))
+
+            // An icon the app doesn't know is stored as unknown, not dropped
+            cursor.moveToNext()
+            assertEquals(DATE + 3 * HOUR, cursor.getLong(0))
+            assertEquals(ICON_UNKNOWN, cursor.getInt(3))
+        }
+
+        db.query("SELECT id, title, updateDate, previewUrl FROM webcams").use { cursor ->
+            assertTrue(cursor.moveToFirst())
+            assertEquals("1234", cursor.getString(0))
+            assertEquals("Santa Monica", cursor.getString(1))
+            assertEquals(DATE, cursor.getLong(2))
+            assertEquals("https://example.com/1234.jpg", cursor.getString(3))
+        }
+    }
+
+    private companion object {
+        const val TEST_DB = "migration-test"
+        const val DATE = 1600005600000L
+        const val HOUR = 60 * 60 * 1000L
+        // Values MIGRATION_11_12 writes for "10n" and for codes it doesn't map
+        const val ICON_10N = 11
+        const val ICON_UNKNOWN = -1
+    }
+}
@@ -0,0 +1,61 @@
+package com.craiovadata.android.sunshine.data.database
+
+import androidx.room.Room
+import androidx.test.core.app.ApplicationProvider
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import org.junit.After
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+
+/**
+ * Guards the plans of the current weather queries: each must be a seek on the
+ * (isCurrentWeather, date) index, without sorting in a temp b-tree.
+ */
+@RunWith(AndroidJUnit4::class)
+class QueryPlanTest {
+
+    private lateinit var db: MyDatabase
+
+    @Before
+    fun createDb() {
+        db = Room.inMemoryDatabaseBuilder(ApplicationProvider.getApplicationContext(), MyDatabase::class.java)
+            .build()
+    }
+
+    @After
+    fun closeDb() {
+        db.close()
+    }
+
+    // The arguments bind to the named parameters in the order they appear in the SQL
+
+    @Test
+    fun getWeatherByKindSeeksIndex() {
+        assertSeeksCurrentWeatherIndex(WeatherDao.WEATHER_BY_KIND, arrayOf(1, 0L, 3))
+    }
+
+    @Test
+    fun getFirstWeatherByKindSeeksIndex() {
+        assertSeeksCurrentWeatherIndex(WeatherDao.FIRST_WEATHER_BY_KIND, arrayOf(0, 0L))
+    }
+
+    @Test
+    fun countCurrentWeatherSeeksIndex() {
+        assertSeeksCurrentWeatherIndex(WeatherDao.COUNT_CURRENT_WEATHER, arrayOf(0L))
+    }
+
+    private fun assertSeeksCurrentWeatherIndex(sql: String, args: Array<Any>) {
+        val plan = ArrayList<String>()
+        db.openHelper.readableDatabase.query("EXPLAIN QUERY PLAN $sql", args).use { cursor ->
+            val detail = cursor.getColumnIndexOrThrow("detail")
+            while (cursor.moveToNext()) plan.add(cursor.getString(detail))
+        }
+        assertTrue("plan: $plan", plan.any {
+            it.startsWith("SEARCH") && it.contains("INDEX index_weather_isCurrentWeather_date")
+        })
+        assertFalse("plan: $plan", plan.any { it.contains("TEMP B-TREE") })
+    }
+}
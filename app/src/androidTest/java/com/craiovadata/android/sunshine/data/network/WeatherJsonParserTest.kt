@@ -0,0 +1,158 @@
+package com.craiovadata.android.sunshine.data.network
+
+import android.os.Debug
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import com.craiovadata.android.sunshine.ui.models.WeatherEntry
+import com.craiovadata.android.sunshine.utilities.SunshineWeatherUtils
+import org.json.JSONObject
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import org.junit.runner.RunWith
+import java.io.StringReader
+
+/**
+ * Checks the streaming forecast parser against the org.json parser it replaced.
+ */
+@RunWith(AndroidJUnit4::class)
+class WeatherJsonParserTest {
+
+    @Test
+    fun sameEntriesAsLegacyParser() {
+        val json = forecastJson(40)
+
+        val expected = legacyParseForecast(json)
+        val actual = WeatherJsonParser().parseForecastWeather(StringReader(json)).weatherForecast
+
+        assertEquals(expected.size, actual.size)
+        expected.zip(actual).forEach { (old, new) ->
+            assertEquals(old.weatherId, new.weatherId)
+            assertEquals(old.date, new.date)
+            assertEquals(old.temperature, new.temperature, 0.0)
+            assertEquals(old.humidity, new.humidity, 0.0)
+            assertEquals(old.pressure, new.pressure, 0.0)
+            assertEquals(old.wind, new.wind, 0.0)
+            assertEquals(old.degrees, new.degrees, 0.0)
+            assertEquals(old.iconCode, new.iconCode)
+            assertEquals(old.lat, new.lat, 0.0)
+            assertEquals(old.lon, new.lon, 0.0)
+        }
+    }
+
+    @Test
+    fun allocatesLessThanLegacyParser() {
+        val json = forecastJson(40)
+        // Warm up both paths, class loading and the JIT allocate too
+        repeat(5) {
+            legacyParseForecast(json)
+            WeatherJsonParser().parseForecastWeather(StringReader(json))
+        }
+
+        val legacyBytes = allocatedBytes { repeat(RUNS) { legacyParseForecast(json) } }
+        val streamingBytes = allocatedBytes {
+            repeat(RUNS) { WeatherJsonParser().parseForecastWeather(StringReader(json)) }
+        }
+
+        assertTrue("legacy $legacyBytes bytes, streaming $streamingBytes bytes", streamingBytes < legacyBytes)
+    }
+
+    @Test
+    fun skipsEntriesWithoutRequiredFields() {
+        val entries = (0 until 4).map { entryJson(it) }.toMutableList()
+        entries[1] = entries[1].replace(Regex("\"main\":\\{[^}]*\\},"), "")
+        entries[2] = entries[2].replace(Regex("\"weather\":\\[[^]]*\\],"), "")
+        val json = "{\"cod\":\"200\",\"cnt\":4,\"list\":[${entries.joinToString(",")}]," +
+                "\"city\":{\"coord\":{\"lat\":34.0522,\"lon\":-118.2437}}}"
+
+        val actual = WeatherJsonParser().parseForecastWeather(StringReader(json)).weatherForecast
+
+        assertEquals(2, actual.size)
+        assertEquals(DT * 1000, actual[0].date)
+        assertEquals((DT + 3 * 3 * 3600) * 1000, actual[1].date)
+    }
+
+    @Test
+    fun negativeCountIsOnlyAHint() {
+        val json = forecastJson(40).replace("\"cnt\":40", "\"cnt\":-1")
+
+        val actual = WeatherJsonParser().parseForecastWeather(StringReader(json)).weatherForecast
+
+        assertEquals(40, actual.size)
+    }
+
+    @Test
+    fun oversizedCountIsOnlyAHint() {
+        val json = forecastJson(40).replace("\"cnt\":40", "\"cnt\":${Int.MAX_VALUE}")
+
+        val actual = WeatherJsonParser().parseForecastWeather(StringReader(json)).weatherForecast
+
+        assertEquals(40, actual.size)
+    }
+
+    @Test
+    fun moreEntriesThanCount() {
+        val json = forecastJson(50).replace("\"cnt\":50", "\"cnt\":10")
+
+        val actual = WeatherJsonParser().parseForecastWeather(StringReader(json)).weatherForecast
+
+        assertEquals(50, actual.size)
+        assertEquals((DT + 49 * 3 * 3600) * 1000, actual[49].date)
+    }
+
+    private fun allocatedBytes(block: () -> Unit): Long {
+        val before = Debug.getRuntimeStat("art.gc.bytes-allocated").toLong()
+        block()
+        return Debug.getRuntimeStat("art.gc.bytes-allocated").toLong() - before
+    }
+
+    /* The forecast parsing of WeatherJsonParser before it was moved to JsonReader */
+    private fun legacyParseForecast(json: String): List<WeatherEntry> {
+        val forecastJson = JSONObject(json)
+        val list = forecastJson.getJSONArray("list")
+        val coord = forecastJson.getJSONObject("city").getJSONObject("coord")
+        val lat = coord.getDouble("lat").toFloat()
+        val lon = coord.getDouble("lon").toFloat()
+        return (0 until list.length()).map { i ->
+            val day = list.getJSONObject(i)
+            val main = day.getJSONObject("main")
+            val wind = day.getJSONObject("wind")
+            val weather = day.getJSONArray("weather").getJSONObject(0)
+            WeatherEntry(
+                weather.getInt("id"),
+                day.getLong("dt") * 1000,
+                main.getDouble("temp"),
+                main.getInt("humidity").toDouble(),
+                main.getDouble("pressure"),
+                wind.getDouble("speed"),
+                wind.getDouble("deg"),
+                SunshineWeatherUtils.getIconCode(weather.getString("icon")),
+                lat.toDouble(),
+                lon.toDouble()
+            )
+        }
+    }
+
+    /* Same shape as an OWM 5 day / 3 hour response, unread fields included */
+    private fun forecastJson(count: Int): String =
+        "{\"cod\":\"200\",\"message\":0,\"cnt\":$count,\"list\":[" +
+                (0 until count).joinToString(",") { entryJson(it) } +
+                "],\"city\":{\"id\":5368361,\"name\":\"Los Angeles\",\"coord\":{\"lat\":34.0522,\"lon\":-118.2437}," +
+                "\"country\":\"US\",\"population\":3792621,\"timezone\":-25200,\"sunrise\":1600002000,\"sunset\":1600047000}}"
+
+    private fun entryJson(i: Int): String {
+        val dt = DT + i * 3 * 3600
+        val icon = ICONS[i % ICONS.size]
+        return "{\"dt\":$dt,\"main\":{\"temp\":${18.0 + i % 7 * 1.37},\"feels_like\":17.2,\"temp_min\":16.1," +
+                "\"temp_max\":19.9,\"pressure\":${1008 + i % 5},\"sea_level\":1012,\"grnd_level\":990," +
+                "\"humidity\":${40 + i % 30},\"temp_kf\":0.4}," +
+                "\"weather\":[{\"id\":${800 + i % 5},\"main\":\"Clouds\",\"description\":\"few clouds\",\"icon\":\"$icon\"}]," +
+                "\"clouds\":{\"all\":20},\"wind\":{\"speed\":${1.5 + i % 4},\"deg\":${i * 17 % 360}}," +
+                "\"visibility\":10000,\"pop\":0.1,\"sys\":{\"pod\":\"d\"},\"dt_txt\":\"2020-09-13 12:00:00\"}"
+    }
+
+    private companion object {
+        const val DT = 1600005600L
+        const val RUNS = 50
+        val ICONS = arrayOf("01d", "02n", "03d", "04n", "10d", "13n", "50d")
+    }
+}
@@ -0,0 +1,141 @@
+package com.craiovadata.android.sunshine.ui.adpterModels
+
+import android.view.ContextThemeWrapper
+import android.view.LayoutInflater
+import android.view.View
+import android.widget.TextView
+import androidx.test.annotation.UiThreadTest
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import androidx.test.platform.app.InstrumentationRegistry
+import com.craiovadata.android.sunshine.R
+import com.craiovadata.android.sunshine.ui.main.CardsAdapter
+import com.craiovadata.android.sunshine.ui.main.TemperatureChartView
+import com.craiovadata.android.sunshine.ui.models.DisplayModels
+import com.craiovadata.android.sunshine.ui.models.GraphDisplay
+import com.craiovadata.android.sunshine.ui.models.ListWeatherEntry
+import com.craiovadata.android.sunshine.utilities.DisplaySettings
+import com.craiovadata.android.sunshine.utilities.SunshineWeatherUtils
+import org.junit.Assert.assertArrayEquals
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertSame
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+
+/**
+ * The next hours chart is only handed new data when its [GraphDisplay] changed, and the labels
+ * it draws are the ones formatted by [DisplayModels.forGraph].
+ */
+@RunWith(AndroidJUnit4::class)
+class GraphChartTest {
+
+    private val context = ContextThemeWrapper(
+        InstrumentationRegistry.getInstrumentation().targetContext, R.style.AppTheme
+    )
+    private val listener = object : CardsAdapter.Listener {
+        override fun onCelsiusFarClicked(view: View) {}
+    }
+
+    private lateinit var card: View
+    private lateinit var temperatureChart: TemperatureChartView
+    private lateinit var settings: DisplaySettings
+
+    @Before
+    fun setUp() {
+        settings = DisplaySettings.get(context)
+        InstrumentationRegistry.getInstrumentation().runOnMainSync {
+            card = LayoutInflater.from(context).inflate(R.layout.card_graph, null, false)
+            temperatureChart = card.findViewById(R.id.temperatureChart)
+        }
+    }
+
+    @Test
+    @UiThreadTest
+    fun equalDisplayDoesNotRebindChart() {
+        val chart = Graph.Chart(card)
+        val display = DisplayModels.forGraph(context, nextHours(), settings)
+
+        chart.bind(display, settings, listener)
+        chart.bind(copyOf(display), settings, listener)
+
+        assertEquals(1, temperatureChart.setDataCount)
+    }
+
+    @Test
+    @UiThreadTest
+    fun changedDisplayRebindsChart() {
+        val chart = Graph.Chart(card)
+
+        chart.bind(DisplayModels.forGraph(context, nextHours(), settings), settings, listener)
+        chart.bind(DisplayModels.forGraph(context, nextHours(from = START + HOUR), settings), settings, listener)
+
+        assertEquals(2, temperatureChart.setDataCount)
+    }
+
+    @Test
+    @UiThreadTest
+    fun emptyDisplayClearsChartOnce() {
+        val chart = Graph.Chart(card)
+
+        chart.bind(DisplayModels.forGraph(context, nextHours(), settings), settings, listener)
+        chart.bind(null, settings, listener)
+        chart.bind(null, settings, listener)
+
+        assertEquals(2, temperatureChart.setDataCount)
+    }
+
+    @Test
+    @UiThreadTest
+    fun unitsToggleWiredWithoutData() {
+        Graph.Chart(card).bind(null, settings, listener)
+
+        // The unit not shown is the one that can be clicked
+        val toggle = card.findViewById<TextView>(
+            if (settings.isImperial) R.id.textViewCelsius else R.id.textViewFarenheit
+        )
+        val shown = card.findViewById<TextView>(
+            if (settings.isImperial) R.id.textViewFarenheit else R.id.textViewCelsius
+        )
+        assertTrue(toggle.hasOnClickListeners())
+        assertFalse(shown.isClickable)
+        assertEquals(0, temperatureChart.setDataCount)
+    }
+
+    @Test
+    fun forGraphFormatsValuesAndHours() {
+        val entries = nextHours()
+
+        val display = DisplayModels.forGraph(context, entries, settings)
+
+        val values = FloatArray(entries.size) {
+            SunshineWeatherUtils.adaptTemperature(entries[it].temperature, settings).toFloat()
+        }
+        val valueLabels = Array(entries.size) {
+            SunshineWeatherUtils.formatTemperature(context, entries[it].temperature, settings)
+        }
+        assertArrayEquals(values, display.values, 0f)
+        assertArrayEquals(valueLabels, display.valueLabels)
+        // START is 07:00 in Los Angeles, then every 3 hours
+        assertArrayEquals(
+            arrayOf("07:00", "10:00", "13:00", "16:00", "19:00", "22:00", "01:00", "04:00"),
+            display.timeLabels
+        )
+        // An equal list is served from the cache
+        assertSame(display, DisplayModels.forGraph(context, nextHours(), settings))
+    }
+
+    private fun copyOf(display: GraphDisplay) = GraphDisplay(
+        display.values.copyOf(), display.valueLabels.copyOf(), display.timeLabels.copyOf()
+    )
+
+    private fun nextHours(from: Long = START) = List(8) { i ->
+        ListWeatherEntry(800, from + i * 3 * HOUR, 18.0 + i * 1.5, 1)
+    }
+
+    private companion object {
+        const val START = 1600005600000L // 2020-09-13T14:00Z
+        const val HOUR = 60 * 60 * 1000L
+    }
+}
@@ -0,0 +1,146 @@
+package com.craiovadata.android.sunshine.ui.main
+
+import android.os.Handler
+import android.os.HandlerThread
+import android.util.Log
+import android.view.Choreographer
+import android.view.FrameMetrics
+import android.view.ViewGroup
+import android.view.Window
+import androidx.test.core.app.ActivityScenario
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import androidx.test.platform.app.InstrumentationRegistry
+import com.craiovadata.android.sunshine.CityData
+import com.craiovadata.android.sunshine.ui.models.DisplayModels
+import com.craiovadata.android.sunshine.ui.models.GraphDisplay
+import com.craiovadata.android.sunshine.ui.models.ListWeatherEntry
+import com.craiovadata.android.sunshine.utilities.DisplaySettings
+import com.craiovadata.android.sunshine.utilities.SunshineWeatherUtils
+import org.junit.After
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Benchmark of the next hours chart frames, bound from a [GraphDisplay] formatted off the main
+ * thread and with the labels formatted in the bind as the chart used to. The bind runs in a frame
+ * callback, so its cost lands in the frame it delays. The numbers are logged, not asserted: the
+ * activity's own work runs alongside and makes them vary from run to run.
+ */
+@RunWith(AndroidJUnit4::class)
+class GraphFrameTest {
+
+    private val instrumentation = InstrumentationRegistry.getInstrumentation()
+    private val context = instrumentation.targetContext
+
+    private lateinit var scenario: ActivityScenario<MainActivity>
+    private lateinit var chart: TemperatureChartView
+    private lateinit var window: Window
+    private val metricsThread = HandlerThread("frame-metrics")
+
+    @Volatile private var frameLatch: CountDownLatch? = null
+    @Volatile private var lastFrameNanos = 0L
+
+    private val metricsListener = Window.OnFrameMetricsAvailableListener { _, metrics, _ ->
+        lastFrameNanos = metrics.getMetric(FrameMetrics.TOTAL_DURATION)
+        frameLatch?.countDown()
+    }
+
+    @Before
+    fun setUp() {
+        metricsThread.start()
+        scenario = ActivityScenario.launch(MainActivity::class.java)
+        scenario.onActivity { activity ->
+            chart = TemperatureChartView(activity)
+            val height = (200 * activity.resources.displayMetrics.density).toInt()
+            activity.addContentView(chart, ViewGroup.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, height))
+            window = activity.window
+            window.addOnFrameMetricsAvailableListener(metricsListener, Handler(metricsThread.looper))
+        }
+    }
+
+    @After
+    fun tearDown() {
+        scenario.onActivity { window.removeOnFrameMetricsAvailableListener(metricsListener) }
+        scenario.close()
+        metricsThread.quitSafely()
+    }
+
+    @Test
+    fun logBindFrameTimes() {
+        val settings = DisplaySettings.get(context)
+        val entries = nextHours()
+        val display = DisplayModels.forGraph(context, entries, settings)
+
+        // Warm up both paths
+        runFrames(WARMUP_FRAMES) { bindFormatting(entries, settings) }
+        runFrames(WARMUP_FRAMES) { bindPrecomputed(display) }
+
+        val formatting = runFrames(FRAMES) { bindFormatting(entries, settings) }
+        val precomputed = runFrames(FRAMES) { bindPrecomputed(display) }
+
+        Log.i(TAG, "formatting in bind: $formatting")
+        Log.i(TAG, "precomputed: $precomputed")
+    }
+
+    private fun bindPrecomputed(display: GraphDisplay) {
+        chart.setData(display.values, display.valueLabels, display.timeLabels)
+    }
+
+    /* What Graph.Chart.bind did before the labels were formatted by the card reducer */
+    private fun bindFormatting(entries: List<ListWeatherEntry>, settings: DisplaySettings) {
+        val values = FloatArray(entries.size) { i ->
+            SunshineWeatherUtils.adaptTemperature(entries[i].temperature, settings).toFloat()
+        }
+        val valueLabels = Array(entries.size) { i ->
+            SunshineWeatherUtils.formatTemperature(context, entries[i].temperature, settings)
+        }
+        val timeLabels = Array(entries.size) { i -> CityData.formatCityTime("HH:mm", entries[i].date) }
+        chart.setData(values, valueLabels, timeLabels)
+    }
+
+    private class Frames(val bindNanos: Long, val frameNanos: LongArray) {
+        override fun toString(): String {
+            val sorted = frameNanos.sortedArray()
+            return "bind ${bindNanos / sorted.size} ns per frame, frame p50 ${sorted[sorted.size / 2] / 1000} us, " +
+                    "p90 ${sorted[sorted.size * 9 / 10] / 1000} us, max ${sorted.last() / 1000} us"
+        }
+    }
+
+    private fun runFrames(count: Int, bind: () -> Unit): Frames {
+        // Written on the main thread, read here once the frames are drawn
+        val bindNanos = AtomicLong()
+        val frameNanos = LongArray(count)
+        for (i in 0 until count) {
+            val latch = CountDownLatch(1)
+            frameLatch = latch
+            instrumentation.runOnMainSync {
+                Choreographer.getInstance().postFrameCallback {
+                    val startedAt = System.nanoTime()
+                    bind()
+                    bindNanos.addAndGet(System.nanoTime() - startedAt)
+                }
+            }
+            assertTrue("no frame drawn", latch.await(1, TimeUnit.SECONDS))
+            frameNanos[i] = lastFrameNanos
+        }
+        frameLatch = null
+        return Frames(bindNanos.get(), frameNanos)
+    }
+
+    private fun nextHours() = List(8) { i ->
+        ListWeatherEntry(800, START + i * 3 * HOUR, 18.0 + i * 1.5, 1)
+    }
+
+    private companion object {
+        const val TAG = "GraphFrameTest"
+        const val WARMUP_FRAMES = 20
+        const val FRAMES = 120
+        const val START = 1600005600000L
+        const val HOUR = 60 * 60 * 1000L
+    }
+}
@@ -1,12 +1,15 @@
 package com.craiovadata.android.sunshine
 
 import android.content.Context
+import android.text.format.DateFormat
 import androidx.preference.PreferenceManager
-import java.text.SimpleDateFormat
+import java.time.Instant
+import java.time.LocalDateTime
+import java.time.ZoneId
+import java.time.format.DateTimeFormatter
 import java.util.*
-import java.util.Calendar.DST_OFFSET
-import java.util.Calendar.ZONE_OFFSET
 import java.util.TimeZone.getTimeZone
+import java.util.concurrent.ConcurrentHashMap
 
 object CityData {
 
@@ -34,20 +37,45 @@ object CityData {
     const val DEFAULT_ZOOM_LEVEL: Int = 10
     const  val AREA_WEBCAMS = 150
 
+    private val cityZone: ZoneId = ZoneId.of(TIME_ZONE_ID)
+    val cityTimeZone: TimeZone = getTimeZone(TIME_ZONE_ID)
+
+    // DateTimeFormatter is immutable, so one instance per pattern is shared by every thread
+    private val cityFormatters = ConcurrentHashMap<String, DateTimeFormatter>()
+
+    // The locale's own hours and minutes pattern (24 or 12 hours), resolved once per locale
+    private val hourMinutePatterns = ConcurrentHashMap<Locale, String>()
+
+    /** Wall clock date and time in the city at [millis] since epoch. */
     @JvmStatic
-    fun getCityOffset(): Long {
-        val cal = GregorianCalendar()
-        cal.timeZone = getTimeZone(TIME_ZONE_ID)
-        return (cal.get(ZONE_OFFSET) + cal.get(DST_OFFSET)).toLong()
+    fun getCityDateTime(millis: Long): LocalDateTime {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), cityZone)
     }
 
+    /** Formatter for [pattern] in the city time zone and the default locale, cached per pattern. */
     @JvmStatic
-    fun getFormatterCityTZ(pattern: String): SimpleDateFormat {
-        val cal = GregorianCalendar()
-        cal.timeZone = getTimeZone(TIME_ZONE_ID)
-        val simpleDateFormat = SimpleDateFormat(pattern, Locale.getDefault())
-        simpleDateFormat.calendar = cal
-        return simpleDateFormat
+    fun getCityFormatter(pattern: String): DateTimeFormatter {
+        val locale = Locale.getDefault()
+        val cached = cityFormatters[pattern]
+        if (cached != null && cached.locale == locale) return cached
+        val formatter = DateTimeFormatter.ofPattern(pattern, locale).withZone(cityZone)
+        cityFormatters[pattern] = formatter
+        return formatter
+    }
+
+    /** [millis] since epoch formatted with [pattern] in the city time zone. */
+    @JvmStatic
+    fun formatCityTime(pattern: String, millis: Long): String =
+        getCityFormatter(pattern).format(Instant.ofEpochMilli(millis))
+
+    /** [millis] since epoch as hours and minutes in the city time zone, the way the locale writes them. */
+    @JvmStatic
+    fun formatCityHourMinute(millis: Long): String {
+        val locale = Locale.getDefault()
+        val pattern = hourMinutePatterns.getOrPut(locale) {
+            DateFormat.getBestDateTimePattern(locale, "HH mm")
+        }
+        return formatCityTime(pattern, millis)
     }
 
     fun getBackResId(context: Context): Int {
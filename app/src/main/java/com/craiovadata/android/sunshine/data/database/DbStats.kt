@@ -0,0 +1,70 @@
+package com.craiovadata.android.sunshine.data.database
+
+import android.os.SystemClock
+import com.craiovadata.android.sunshine.utilities.LogUtils.log
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Process-wide timings for the database work. Every tag (an executor, or a [WeatherDao] method
+ * called through [measure]) keeps how long its tasks waited in the executor queue before they
+ * started and how long they ran.
+ */
+internal object DbStats {
+
+    private class Timing {
+        val count = AtomicLong()
+        val totalWaitMs = AtomicLong()
+        val maxWaitMs = AtomicLong()
+        val totalRunMs = AtomicLong()
+        val rows = AtomicLong()
+    }
+
+    private val timings = ConcurrentHashMap<String, Timing>()
+
+    /* Queue wait of the executor task running on the current thread, set by TimedExecutor */
+    private val currentTaskWaitMs = ThreadLocal<Long>()
+
+    fun record(tag: String, waitMs: Long, runMs: Long, rows: Int = 0) {
+        val timing = timings.getOrPut(tag) { Timing() }
+        timing.count.incrementAndGet()
+        timing.rows.addAndGet(rows.toLong())
+        timing.totalWaitMs.addAndGet(waitMs)
+        timing.totalRunMs.addAndGet(runMs)
+        while (true) {
+            val max = timing.maxWaitMs.get()
+            if (waitMs <= max || timing.maxWaitMs.compareAndSet(max, waitMs)) break
+        }
+    }
+
+    internal fun onTaskStarted(waitMs: Long) = currentTaskWaitMs.set(waitMs)
+
+    internal fun onTaskFinished() = currentTaskWaitMs.remove()
+
+    /**
+     * Runs [block] and records its duration under [tag], together with the queue wait of the
+     * executor task it runs in (0 when called outside of one).
+     */
+    inline fun <T> measure(tag: String, block: () -> T): T {
+        val start = SystemClock.elapsedRealtime()
+        try {
+            return block()
+        } finally {
+            val runMs = SystemClock.elapsedRealtime() - start
+            record(tag, currentWaitMs(), runMs)
+            log("db $tag ${runMs}ms")
+        }
+    }
+
+    fun currentWaitMs(): Long = currentTaskWaitMs.get() ?: 0L
+
+    fun summary(): String = timings.entries.sortedBy { it.key }.joinToString(
+        separator = "\n", prefix = "db stats:\n"
+    ) { (tag, timing) ->
+        val count = timing.count.get()
+        val rows = timing.rows.get()
+        "$tag: $count calls, avg wait ${timing.totalWaitMs.get() / count}ms " +
+                "(max ${timing.maxWaitMs.get()}ms), avg run ${timing.totalRunMs.get() / count}ms" +
+                (if (rows > 0) ", $rows rows" else "")
+    }
+}
@@ -0,0 +1,117 @@
+package com.craiovadata.android.sunshine.data.database
+
+import android.content.Context
+import android.content.SharedPreferences
+import android.text.format.DateUtils.DAY_IN_MILLIS
+import android.text.format.DateUtils.HOUR_IN_MILLIS
+import android.text.format.DateUtils.MINUTE_IN_MILLIS
+import com.craiovadata.android.sunshine.utilities.LogUtils.log
+import java.lang.System.currentTimeMillis
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Tells [Repository] whether what it has stored is still fresh, without going to the database.
+ * The time of the last successful sync of each [Resource] is kept in memory and persisted in
+ * its own preferences file, so it survives process death.
+ *
+ * The cached data is always shown right away; a stale or missing resource just means a fetch
+ * is started in the background (stale-while-revalidate).
+ *
+ * The same file keeps the fingerprint of the last payload stored for each [Resource], so a
+ * response identical to it is skipped even after a restart.
+ */
+class Freshness private constructor(private val mPrefs: SharedPreferences) {
+
+    enum class Resource(val ttlMillis: Long) {
+        // OWM moves the 5 day forecast one 3 hour step at a time
+        FORECAST(3 * HOUR_IN_MILLIS),
+        CURRENT_WEATHER(10 * MINUTE_IN_MILLIS),
+        WEBCAMS(7 * DAY_IN_MILLIS)
+    }
+
+    enum class State { FRESH, STALE, MISSING }
+
+    private val mLastSuccess = LongArray(Resource.values().size)
+    private val mHits = AtomicLong()
+    private val mStale = AtomicLong()
+    private val mMisses = AtomicLong()
+
+    init {
+        Resource.values().forEach { mLastSuccess[it.ordinal] = mPrefs.getLong(it.name, 0L) }
+        // Fingerprints used to be keyed by request url, api keys included
+        val byUrl = mPrefs.all.keys.filter { it.startsWith(OLD_FINGERPRINT_PREFIX) }
+        if (byUrl.isNotEmpty()) mPrefs.edit().apply { byUrl.forEach { remove(it) } }.apply()
+    }
+
+    /**
+     * @return [State.FRESH] if [resource] was synced less than its ttl ago, [State.STALE] if it
+     * was synced before that, [State.MISSING] if it never was
+     */
+    fun check(resource: Resource): State {
+        val lastSuccess = synchronized(mLastSuccess) { mLastSuccess[resource.ordinal] }
+        val state = when {
+            lastSuccess == 0L -> State.MISSING
+            currentTimeMillis() - lastSuccess < resource.ttlMillis -> State.FRESH
+            else -> State.STALE
+        }
+        when (state) {
+            State.FRESH -> mHits.incrementAndGet()
+            State.STALE -> mStale.incrementAndGet()
+            State.MISSING -> mMisses.incrementAndGet()
+        }
+        log("freshness $resource $state. ${summary()}")
+        return state
+    }
+
+    fun isFetchNeeded(resource: Resource): Boolean = check(resource) != State.FRESH
+
+    /** Call once [resource] has been synced, or the server confirmed it hasn't changed. */
+    fun onSynced(resource: Resource) {
+        val now = currentTimeMillis()
+        synchronized(mLastSuccess) { mLastSuccess[resource.ordinal] = now }
+        mPrefs.edit().putLong(resource.name, now).apply()
+    }
+
+    /** True when [fingerprint] is the last payload of [resource] committed to the database. */
+    fun isApplied(resource: Resource, fingerprint: String): Boolean =
+        mPrefs.getString(resource.name + FINGERPRINT_SUFFIX, null) == fingerprint
+
+    /** Call once a payload of [resource] has been committed to the database. */
+    fun onApplied(resource: Resource, fingerprint: String) {
+        mPrefs.edit().putString(resource.name + FINGERPRINT_SUFFIX, fingerprint).apply()
+    }
+
+    /** Forgets every sync and every applied payload, for when the database starts out empty. */
+    fun clear() {
+        synchronized(mLastSuccess) { mLastSuccess.fill(0L) }
+        mPrefs.edit().clear().apply()
+    }
+
+    fun summary(): String =
+        "freshness stats: ${mHits.get()} hits, ${mStale.get()} stale, ${mMisses.get()} misses"
+
+    companion object {
+        private const val PREFS_NAME = "freshness"
+        private const val FINGERPRINT_SUFFIX = "_FINGERPRINT"
+        private const val OLD_FINGERPRINT_PREFIX = "fingerprint:"
+
+        // For Singleton instantiation
+        private val LOCK = Any()
+        @Volatile
+        private var sInstance: Freshness? = null
+
+        fun getInstance(context: Context): Freshness {
+            if (sInstance == null) {
+                synchronized(LOCK) {
+                    if (sInstance == null) {
+                        val prefs = context.applicationContext
+                            .getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE)
+                        sInstance = Freshness(prefs)
+                        log("Made new freshness")
+                    }
+                }
+            }
+            return sInstance!!
+        }
+    }
+}
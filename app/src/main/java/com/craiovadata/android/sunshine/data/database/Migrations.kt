@@ -0,0 +1,92 @@
+package com.craiovadata.android.sunshine.data.database
+
+import androidx.room.migration.Migration
+import androidx.sqlite.db.SupportSQLiteDatabase
+import com.craiovadata.android.sunshine.CityData
+
+/**
+ * Schema migrations for [MyDatabase]. Keeping the cached forecast and webcams across an app
+ * update means the first launch after it can render right away instead of waiting for a sync.
+ */
+internal object Migrations {
+
+    /**
+     * Adds the city-local hour and day columns used by the mid-day forecast query, plus their
+     * index, and fills them in for the rows already stored.
+     */
+    val MIGRATION_9_10 = object : Migration(9, 10) {
+        override fun migrate(database: SupportSQLiteDatabase) {
+            database.execSQL("ALTER TABLE `weather` ADD COLUMN `localHour` INTEGER NOT NULL DEFAULT 0")
+            database.execSQL("ALTER TABLE `weather` ADD COLUMN `localDay` INTEGER NOT NULL DEFAULT 0")
+            database.execSQL(
+                "CREATE INDEX IF NOT EXISTS `index_weather_localHour_localDay` ON `weather` (`localHour`, `localDay`)"
+            )
+
+            database.query("SELECT `date` FROM `weather`").use { cursor ->
+                while (cursor.moveToNext()) {
+                    val date = cursor.getLong(0)
+                    val cityDateTime = CityData.getCityDateTime(date)
+                    database.execSQL(
+                        "UPDATE `weather` SET `localHour` = ?, `localDay` = ? WHERE `date` = ?",
+                        arrayOf<Any>(cityDateTime.hour, cityDateTime.toLocalDate().toEpochDay(), date)
+                    )
+                }
+            }
+        }
+    }
+
+    /**
+     * Index backing the current weather lookups.
+     */
+    val MIGRATION_10_11 = object : Migration(10, 11) {
+        override fun migrate(database: SupportSQLiteDatabase) {
+            database.execSQL(
+                "CREATE INDEX IF NOT EXISTS `index_weather_isCurrentWeather_date` ON `weather` (`isCurrentWeather`, `date`)"
+            )
+        }
+    }
+
+    /**
+     * Replaces the iconCodeOWM text column with the integer iconCode and drops cityName and
+     * description. SQLite can't drop columns, so the table is rebuilt.
+     */
+    val MIGRATION_11_12 = object : Migration(11, 12) {
+        override fun migrate(database: SupportSQLiteDatabase) {
+            // Frozen copy of SunshineWeatherUtils.OWM_ICON_CODES as it was at version 12, -1 is unknown
+            val iconCase = "CASE `iconCodeOWM` " +
+                    "WHEN '01d' THEN 0 WHEN '01n' THEN 1 WHEN '02d' THEN 2 WHEN '02n' THEN 3 " +
+                    "WHEN '03d' THEN 4 WHEN '03n' THEN 5 WHEN '04d' THEN 6 WHEN '04n' THEN 7 " +
+                    "WHEN '09d' THEN 8 WHEN '09n' THEN 9 WHEN '10d' THEN 10 WHEN '10n' THEN 11 " +
+                    "WHEN '11d' THEN 12 WHEN '11n' THEN 13 WHEN '13d' THEN 14 WHEN '13n' THEN 15 " +
+                    "WHEN '50d' THEN 16 WHEN '50n' THEN 17 ELSE -1 END"
+
+            database.execSQL(
+                "CREATE TABLE IF NOT EXISTS `weather_new` (`date` INTEGER NOT NULL, `weatherId` INTEGER NOT NULL, " +
+                        "`temperature` REAL NOT NULL, `humidity` REAL NOT NULL, `pressure` REAL NOT NULL, " +
+                        "`wind` REAL NOT NULL, `degrees` REAL NOT NULL, `lat` REAL NOT NULL, `lon` REAL NOT NULL, " +
+                        "`iconCode` INTEGER NOT NULL, `isCurrentWeather` INTEGER NOT NULL, `sunrise` INTEGER NOT NULL, " +
+                        "`sunset` INTEGER NOT NULL, `dt` INTEGER NOT NULL, `localHour` INTEGER NOT NULL, " +
+                        "`localDay` INTEGER NOT NULL, PRIMARY KEY(`date`))"
+            )
+            database.execSQL(
+                "INSERT INTO `weather_new` (`date`, `weatherId`, `temperature`, `humidity`, `pressure`, `wind`, " +
+                        "`degrees`, `lat`, `lon`, `iconCode`, `isCurrentWeather`, `sunrise`, `sunset`, `dt`, " +
+                        "`localHour`, `localDay`) " +
+                        "SELECT `date`, `weatherId`, `temperature`, `humidity`, `pressure`, `wind`, `degrees`, " +
+                        "`lat`, `lon`, $iconCase, `isCurrentWeather`, `sunrise`, `sunset`, `dt`, " +
+                        "`localHour`, `localDay` FROM `weather`"
+            )
+            database.execSQL("DROP TABLE `weather`")
+            database.execSQL("ALTER TABLE `weather_new` RENAME TO `weather`")
+            database.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS `index_weather_date` ON `weather` (`date`)")
+            database.execSQL(
+                "CREATE INDEX IF NOT EXISTS `index_weather_localHour_localDay` ON `weather` (`localHour`, `localDay`)"
+            )
+            database.execSQL(
+                "CREATE INDEX IF NOT EXISTS `index_weather_isCurrentWeather_date` ON `weather` (`isCurrentWeather`, `date`)"
+            )
+        }
+    }
+
+    val ALL = arrayOf(MIGRATION_9_10, MIGRATION_10_11, MIGRATION_11_12)
+}
@@ -5,20 +5,30 @@ import android.util.Log
 import androidx.room.Database
 import androidx.room.Room.databaseBuilder
 import androidx.room.RoomDatabase
-import androidx.room.TypeConverters
+import androidx.sqlite.db.SupportSQLiteDatabase
 import com.craiovadata.android.sunshine.ui.models.WeatherEntry
 import com.craiovadata.android.sunshine.ui.models.WebcamEntry
+import com.craiovadata.android.sunshine.utilities.AppExecutors
 
-@Database(entities = [WeatherEntry::class, WebcamEntry::class], version = 9, exportSchema = false)
-@TypeConverters(
-    DateConverter::class
-)
+@Database(entities = [WeatherEntry::class, WebcamEntry::class], version = 12, exportSchema = true)
 abstract class MyDatabase : RoomDatabase() {
     abstract fun weatherDao(): WeatherDao?
 
+    /* An empty database has nothing fresh in it, whatever the last sync times say */
+    private class FreshnessReset(private val context: Context) : Callback() {
+        override fun onCreate(db: SupportSQLiteDatabase) {
+            Freshness.getInstance(context).clear()
+        }
+
+        override fun onDestructiveMigration(db: SupportSQLiteDatabase) {
+            Freshness.getInstance(context).clear()
+        }
+    }
+
     companion object {
         private val LOG_TAG = MyDatabase::class.java.simpleName
         private const val DATABASE_NAME = "weather"
+        private val LEGACY_VERSIONS = intArrayOf(1, 2, 3, 4, 5, 6, 7, 8)
         // For Singleton instantiation
         private val LOCK = Any()
         @Volatile
@@ -29,12 +39,22 @@ abstract class MyDatabase : RoomDatabase() {
             Log.d(LOG_TAG, "Getting the database")
             if (sInstance == null) {
                 synchronized(LOCK) {
+                    val executors = AppExecutors.instance
                     sInstance = databaseBuilder(
                         context.applicationContext,
                         MyDatabase::class.java,
                         DATABASE_NAME
                     )
-                        .fallbackToDestructiveMigration()
+                        .addMigrations(*Migrations.ALL)
+                        // Schemas before 9 were never exported, there is nothing to migrate from
+                        .fallbackToDestructiveMigrationFrom(*LEGACY_VERSIONS)
+                        // Room would pick WAL on its own on most devices, but not on low-RAM ones,
+                        // and the reader pool below relies on readers not blocking on the writer
+                        .setJournalMode(RoomDatabase.JournalMode.WRITE_AHEAD_LOGGING)
+                        // LiveData queries run on the reader pool, transactions on the writer thread
+                        .setQueryExecutor(executors.diskRead())
+                        .setTransactionExecutor(executors.diskIO())
+                        .addCallback(FreshnessReset(context.applicationContext))
                         .build()
                     Log.d(LOG_TAG, "Made new database")
                 }
@@ -1,23 +1,28 @@
 package com.craiovadata.android.sunshine.data.database
 
+import android.os.SystemClock
 import android.text.format.DateUtils
-import android.text.format.DateUtils.DAY_IN_MILLIS
 import android.text.format.DateUtils.HOUR_IN_MILLIS
-import androidx.lifecycle.LiveData
 import com.craiovadata.android.sunshine.utilities.AppExecutors
+import com.craiovadata.android.sunshine.data.network.FetchResult
+import com.craiovadata.android.sunshine.data.network.IngestBatch
 import com.craiovadata.android.sunshine.data.network.NetworkDataSource
 import com.craiovadata.android.sunshine.CityData
 import com.craiovadata.android.sunshine.CityData.isTestMode
+import com.craiovadata.android.sunshine.data.database.Freshness.Resource
 import com.craiovadata.android.sunshine.ui.models.ListWeatherEntry
 import com.craiovadata.android.sunshine.ui.models.WeatherEntry
 import com.craiovadata.android.sunshine.ui.models.WebcamEntry
 import com.craiovadata.android.sunshine.utilities.LogUtils.log
+import kotlinx.coroutines.CoroutineScope
 import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.GlobalScope
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.asCoroutineDispatcher
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.combine
 import kotlinx.coroutines.launch
 import java.lang.System.currentTimeMillis
-import java.util.*
-import java.util.concurrent.TimeUnit
 
 /**
  * Handles data operations in Sunshine. Acts as a mediator between [NetworkDataSource]
@@ -26,71 +31,106 @@ import java.util.concurrent.TimeUnit
 class Repository private constructor(
     private val mWeatherDao: WeatherDao,
     private val mNetworkDataSource: NetworkDataSource,
-    private val mExecutors: AppExecutors
+    private val mExecutors: AppExecutors,
+    private val mFreshness: Freshness
 ) {
     private var initializedForecast = false
     private var initializedCurrentWeather = false
     private var initializedWebcams = false
 
-    init {
+    // Lives as long as the repository, which is for the whole process
+    private val mScope = CoroutineScope(SupervisorJob() + mExecutors.diskIO().asCoroutineDispatcher())
 
-        GlobalScope.launch(Dispatchers.Main) {
+    init {
+        mScope.launch { ingest() }
+    }
 
-            mNetworkDataSource.forecasts.observeForever { newForecastsFromNetwork ->
-                mExecutors.diskIO().execute {
-                    // Deletes old historical data
-                    deleteOldWeatherData()
-                    // Insert our new weather data into Sunshine's database
-                    mWeatherDao.bulkInsert(*newForecastsFromNetwork)
-                    log( "Old weather deleted. New values inserted.")
-                }
+    /*
+     * Stores everything NetworkDataSource downloads, on the writer thread. Batches that piled up
+     * while the previous write was running are written together in one transaction, up to
+     * MAX_BATCHES_PER_TRANSACTION, so observers see one invalidation for all of them.
+     */
+    private suspend fun ingest() {
+        val pending = ArrayList<IngestBatch>(MAX_BATCHES_PER_TRANSACTION)
+        for (first in mNetworkDataSource.ingest) {
+            pending.add(first)
+            while (pending.size < MAX_BATCHES_PER_TRANSACTION) {
+                pending.add(mNetworkDataSource.ingest.poll() ?: break)
             }
 
-
-            mNetworkDataSource.currentWeather.observeForever { newDataFromNetwork ->
-                mExecutors.diskIO().execute {
-                    mWeatherDao.bulkInsert(*newDataFromNetwork)
+            val startedAt = SystemClock.elapsedRealtime()
+            try {
+                mWeatherDao.inTransaction {
+                    pending.forEach { batch -> store(batch) }
                 }
+            } catch (e: RuntimeException) {
+                // SQLiteException mostly (disk full, constraint). Nothing was written: the fetches
+                // fail and are retried, and the loop keeps consuming
+                log("Storing ${pending.size} batches failed: $e")
+                pending.forEach { batch -> batch.stored.complete(false) }
+                pending.clear()
+                continue
             }
-
-            mNetworkDataSource.webcams.observeForever { newWebcamsFromNetwork ->
-                mExecutors.diskIO().execute {
-                    // Deletes old historical data
-                    deleteOldWebcamsData()
-                    // Insert our new weather data into Sunshine's database
-                    mWeatherDao.bulkInsertWebcams(*newWebcamsFromNetwork)
-                    log( "Old webcams deleted. New values inserted.")
-                }
+            val runMs = SystemClock.elapsedRealtime() - startedAt
+            DbStats.record(
+                "ingest", startedAt - pending[0].enqueuedAt, runMs, pending.sumBy { it.size }
+            )
+            // Only now that the rows are committed may the same payload be skipped next time
+            pending.forEach { batch ->
+                batch.response.markApplied()
+                mFreshness.onSynced(resourceOf(batch))
+                batch.stored.complete(true)
             }
+            log("Stored ${pending.size} batches in ${runMs}ms")
+            log(DbStats.summary())
+            pending.clear()
+        }
+    }
 
+    private fun store(batch: IngestBatch) {
+        when (batch) {
+            // Deletes old historical data and inserts our new weather data in one go
+            is IngestBatch.Forecast -> replaceOldWeatherData(batch.entries)
+            is IngestBatch.CurrentWeather -> mWeatherDao.insertWeather(*batch.entries)
+            // Deletes old webcams and inserts the new ones in one go
+            is IngestBatch.Webcams -> mWeatherDao.replaceOldWebcams(currentTimeMillis(), *batch.entries)
         }
+    }
 
+    private fun resourceOf(batch: IngestBatch): Resource = when (batch) {
+        is IngestBatch.Forecast -> Resource.FORECAST
+        is IngestBatch.CurrentWeather -> Resource.CURRENT_WEATHER
+        is IngestBatch.Webcams -> Resource.WEBCAMS
     }
 
+    // Runs the webcam location lookup on the reader pool, releasing it while the network call is
+    // in flight. It only reads, so it never queues behind the writes done on diskIO.
+    private val mDiskDispatcher = mExecutors.diskRead().asCoroutineDispatcher()
+
     @Synchronized
     private fun refreshDataCurrentWeather() {
-        mExecutors.diskIO().execute {
-            if (isFetchCurrentWeatherNeeded)
-                mNetworkDataSource.fetchCurrentWeather()
+        if (!mFreshness.isFetchNeeded(Resource.CURRENT_WEATHER)) return
+        GlobalScope.launch(Dispatchers.Default) {
+            onRevalidated(Resource.CURRENT_WEATHER, mNetworkDataSource.fetchCurrentWeather())
         }
     }
 
-    val dayWeatherEntries: LiveData<List<ListWeatherEntry>>
+    /*
+     * Updated results are marked as synced once they are stored, by ingest(). A
+     * not modified answer means what we have stored is still current.
+     */
+    private fun onRevalidated(resource: Resource, result: FetchResult<*>) {
+        if (result is FetchResult.NotModified) mFreshness.onSynced(resource)
+    }
+
+    val dayWeatherEntries: Flow<List<ListWeatherEntry>>
         get() {
             initializeForecastData()
-            val offset = CityData.getCityOffset()
-
-            val daysSinceEpoch = TimeUnit.MILLISECONDS.toDays(currentTimeMillis())
-            val tomorrowMidnightNormalizedUtc = (daysSinceEpoch + 1) * DAY_IN_MILLIS
-
-            return mWeatherDao.getMidDayForecast(
-                Date(tomorrowMidnightNormalizedUtc),
-                offset,
-                HOUR_IN_MILLIS
-            )
+            val today = CityData.getCityDateTime(currentTimeMillis()).toLocalDate().toEpochDay()
+            return mWeatherDao.getMidDayForecast(today)
         }
 
-    val webcamsEntries: LiveData<List<WebcamEntry>>
+    val webcamsEntries: Flow<List<WebcamEntry>>
         get() {
             initializeWebcamData(null)
             return mWeatherDao.getAllWebcamEntries()
@@ -100,40 +140,9 @@ class Repository private constructor(
         get() {
             initDataCurrentWeather()
             val recentlyMills = currentTimeMillis() - DateUtils.MINUTE_IN_MILLIS * delay
-            val recentDate = Date(recentlyMills)
-            return mWeatherDao.getCurrentWeatherList(recentDate)
-        }
-
-    /**
-     * Checks if there are enough days of future weather for the app to display all the needed data.
-     *
-     * @return Whether a fetch is needed
-     */
-    private val isFetchForecastNeeded: Boolean
-        get() {
-            val now = Date(currentTimeMillis())
-            val count = mWeatherDao.countAllFutureWeatherEntries(now)
-            return count < NetworkDataSource.NUM_MIN_DATA_COUNTS
-        }
-
-    private val isFetchCurrentWeatherNeeded: Boolean
-        get() {
-            val dateRecently = Date(currentTimeMillis() - DateUtils.MINUTE_IN_MILLIS * delay)
-            val count = mWeatherDao.countCurrentWeather(dateRecently)
-            val isFetchNeededCW = count < 1
-            log("isFetchNeededCW: $isFetchNeededCW")
-            return isFetchNeededCW
-        }
-
-    private val isFetchWebcamsNeeded: Boolean
-        get() {
-            val webcams = mWeatherDao.getLatestWebcam()
-
-            if (webcams.isNullOrEmpty()) return true
-            // check if data webcams is older than one week
-            val oneWeekAgo = Date(currentTimeMillis() - 7 * DAY_IN_MILLIS )
-            val isOldWebcamsData = webcams[0].updateDate < oneWeekAgo
-            return isOldWebcamsData
+            return DbStats.measure("getCurrentWeatherList") {
+                mWeatherDao.getCurrentWeatherList(recentlyMills)
+            }
         }
 
     /** Creates periodic sync tasks and checks to see if an immediate sync is required. If an
@@ -149,32 +158,32 @@ class Repository private constructor(
 
         mNetworkDataSource.scheduleFetchWeather()
 
-//            // java.lang.IllegalStateException: Cannot access database on the main thread since it may potentially lock the UI for a long period of time.
-        mExecutors.diskIO().execute {
-            if (!isFetchForecastNeeded) return@execute
-            mNetworkDataSource.fetchWeather { firstWeatherEntry ->
-                if (firstWeatherEntry != null){
-                    initializeWebcamData(firstWeatherEntry)
-                }
-
+        // The stored forecast is shown anyway, a fetch only refreshes it in the background
+        if (!mFreshness.isFetchNeeded(Resource.FORECAST)) return
+        GlobalScope.launch(Dispatchers.Default) {
+            val result = mNetworkDataSource.fetchWeather()
+            onRevalidated(Resource.FORECAST, result)
+            if (result is FetchResult.Updated) {
+                initializeWebcamData(result.data[0])
             }
         }
     }
 
     private fun initializeWebcamData(weatherEntry: WeatherEntry?) {
+        if (initializedWebcams) return
 
-        mExecutors.diskIO().execute {
+        GlobalScope.launch(mDiskDispatcher) {
 
-            val weather = weatherEntry ?: mWeatherDao.getOneRandomWeatherEntry() ?: return@execute
+            val weather = weatherEntry
+                ?: DbStats.measure("getOneRandomWeatherEntry") { mWeatherDao.getOneRandomWeatherEntry() }
+                ?: return@launch
 
-            if (initializedWebcams) return@execute
+            if (initializedWebcams) return@launch
             initializedWebcams = true
 
             mNetworkDataSource.scheduleFetchWebcams(weather)
-            if (!isFetchWebcamsNeeded) return@execute
-            mNetworkDataSource.fetchWebcams (weather.lat, weather.lon){success ->
-
-            }
+            if (!mFreshness.isFetchNeeded(Resource.WEBCAMS)) return@launch
+            onRevalidated(Resource.WEBCAMS, mNetworkDataSource.fetchWebcams(weather.lat, weather.lon))
         }
     }
 
@@ -183,35 +192,33 @@ class Repository private constructor(
         if (initializedCurrentWeather) return
         initializedCurrentWeather = true
 
-        mExecutors.diskIO().execute {
-            if (isFetchCurrentWeatherNeeded)
-                mNetworkDataSource.fetchCurrentWeather()
+        if (!mFreshness.isFetchNeeded(Resource.CURRENT_WEATHER)) return
+        GlobalScope.launch(Dispatchers.Default) {
+            onRevalidated(Resource.CURRENT_WEATHER, mNetworkDataSource.fetchCurrentWeather())
         }
     }
 
-    private fun deleteOldWeatherData() {
+    private fun replaceOldWeatherData(newEntries: Array<WeatherEntry>) {
         //        Date today = SunshineDateUtils.getNormalizedUtcDateForToday();
         val oldTime = currentTimeMillis() - HOUR_IN_MILLIS
-        val date = Date(oldTime)
-        mWeatherDao.deleteOldWeather(date)
-    }
- private fun deleteOldWebcamsData() {
-        mWeatherDao.deleteOldWebcams(Date())
+        mWeatherDao.replaceOldWeather(oldTime, *newEntries)
     }
 
-    fun getCurrentWeather(timestamp: Long): LiveData<List<WeatherEntry>>? {
+    fun getCurrentWeather(timestamp: Long): Flow<List<WeatherEntry>> {
         refreshDataCurrentWeather()
         val recentlyMills = timestamp - DateUtils.MINUTE_IN_MILLIS * delay
-        val recentDate = Date(recentlyMills)
         val limitCountData = if (isTestMode) 3 else 1
-        log("get currentWeather more recent than $recentDate")
-        return mWeatherDao.getCurrentWeather(recentDate, limitCountData)
+        log("get currentWeather more recent than $recentlyMills")
+        // Current weather rows first, then forecast rows, limitCountData in all
+        return combine(
+            mWeatherDao.getWeatherByKind(WeatherEntry.CURRENT_WEATHER, recentlyMills, limitCountData),
+            mWeatherDao.getWeatherByKind(WeatherEntry.NON_CURRENT_WEATHER, recentlyMills, limitCountData)
+        ) { current, forecast -> (current + forecast).take(limitCountData) }
 
     }
 
-    fun getWeatherNextHours(timestamp: Long): LiveData<List<ListWeatherEntry>> {
-        val date = Date(timestamp - 1)
-        return mWeatherDao.getCurrentForecast(date)
+    fun getWeatherNextHours(timestamp: Long): Flow<List<ListWeatherEntry>> {
+        return mWeatherDao.getCurrentForecast(timestamp - 1)
 
     }
 
@@ -224,7 +231,7 @@ class Repository private constructor(
         @Synchronized
         fun getInstance(
             weatherDao: WeatherDao, networkDataSource: NetworkDataSource,
-            executors: AppExecutors
+            executors: AppExecutors, freshness: Freshness
         ): Repository {
             log("Getting the repository")
             if (sInstance == null) {
@@ -232,7 +239,7 @@ class Repository private constructor(
                     sInstance =
                         Repository(
                             weatherDao, networkDataSource,
-                            executors
+                            executors, freshness
                         )
                     log("Made new repository")
                 }
@@ -241,5 +248,6 @@ class Repository private constructor(
         }
 
         private const val delay = 10
+        private const val MAX_BATCHES_PER_TRANSACTION = 8
     }
 }
\ No newline at end of file
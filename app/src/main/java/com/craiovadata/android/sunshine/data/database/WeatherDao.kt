@@ -1,15 +1,14 @@
 package com.craiovadata.android.sunshine.data.database
 
-import java.util.Date
-
-import androidx.lifecycle.LiveData
 import androidx.room.Dao
 import androidx.room.Insert
 import androidx.room.OnConflictStrategy
 import androidx.room.Query
+import androidx.room.Transaction
 import com.craiovadata.android.sunshine.ui.models.ListWeatherEntry
 import com.craiovadata.android.sunshine.ui.models.WeatherEntry
 import com.craiovadata.android.sunshine.ui.models.WebcamEntry
+import kotlinx.coroutines.flow.Flow
 
 @Dao
 interface
@@ -22,47 +21,107 @@ WeatherDao {
     fun bulkInsertWebcams(vararg webcams: WebcamEntry)
 
     @Query("SELECT * FROM weather")
-    fun getAllWeatherEntries(): LiveData<List<WeatherEntry>>
+    fun getAllWeatherEntries(): Flow<List<WeatherEntry>>
 
     @Query("SELECT * FROM weather LIMIT 1")
     fun getOneRandomWeatherEntry(): WeatherEntry?
 
 //    @Query("SELECT id, weatherId, date, temperature, iconCodeOWM FROM weather WHERE date >= :date ORDER BY date ASC LIMIT 5")
-    @Query("SELECT date, weatherId, temperature, iconCodeOWM FROM weather WHERE date >= :date ORDER BY date ASC LIMIT 5")
-    fun getCurrentForecast(date: Date): LiveData<List<ListWeatherEntry>>
+    @Query("SELECT date, weatherId, temperature, iconCode FROM weather WHERE date >= :date ORDER BY date ASC LIMIT 5")
+    fun getCurrentForecast(date: Long): Flow<List<ListWeatherEntry>>
 
     @Query("SELECT COUNT(*) FROM weather WHERE date > :date")
-    fun countAllFutureWeatherEntries(date: Date): Int
+    fun countAllFutureWeatherEntries(date: Long): Int
 
-    @Query("SELECT COUNT(*) FROM weather WHERE date >= :recently AND isCurrentWeather = 1")
-    fun countCurrentWeather(recently: Date): Int
+    @Query(COUNT_CURRENT_WEATHER)
+    fun countCurrentWeather(recently: Long): Int
 
     @Query("DELETE FROM weather WHERE date < :recently")
-    fun deleteOldWeather(recently: Date)
+    fun deleteOldWeather(recently: Long)
 
     @Query("DELETE FROM webcams WHERE updateDate < :mDate")
-    fun deleteOldWebcams(mDate: Date)
+    fun deleteOldWebcams(mDate: Long)
+
+    /**
+     * Deletes the weather older than [recently] and stores the new forecast in one transaction,
+     * so observers of the weather table are invalidated once per sync instead of twice.
+     */
+    @Transaction
+    fun replaceOldWeather(recently: Long, vararg weather: WeatherEntry) {
+        deleteOldWeather(recently)
+        insertWeather(*weather)
+    }
+
+    /**
+     * Fills in the city-local hour and day of each entry, then stores them.
+     */
+    @Transaction
+    fun insertWeather(vararg weather: WeatherEntry) {
+        weather.forEach { it.updateLocalTime() }
+        bulkInsert(*weather)
+    }
+
+    /**
+     * Same as [replaceOldWeather], for the webcams table.
+     */
+    @Transaction
+    fun replaceOldWebcams(mDate: Long, vararg webcams: WebcamEntry) {
+        deleteOldWebcams(mDate)
+        bulkInsertWebcams(*webcams)
+    }
+
+    /**
+     * Runs [block] in a single transaction, so observers are invalidated once for all the writes
+     * it makes.
+     */
+    @Transaction
+    fun inTransaction(block: () -> Unit) {
+        block()
+    }
 
     @Query("SELECT COUNT(*) FROM webcams ")
     fun countAllWebcamEntries(): Int
 
-    @Query("SELECT * FROM weather WHERE date  >= :recentlyDate ORDER BY isCurrentWeather DESC, date ASC LIMIT :limit")
-    fun getCurrentWeather(recentlyDate: Date, limit: Int): LiveData<List<WeatherEntry>>
-
-    @Query("SELECT * FROM weather WHERE date  >= :recentlyDate ORDER BY isCurrentWeather DESC, date ASC LIMIT 1")
-    fun getCurrentWeatherList(recentlyDate: Date): List<WeatherEntry>
+    /*
+     * Current weather rows, or forecast rows, by date: one seek on the (isCurrentWeather, date)
+     * index. Callers that want current weather first and the forecast after it query both kinds
+     * separately, ORDER BY isCurrentWeather DESC, date ASC would need a temp b-tree.
+     */
+    @Query(WEATHER_BY_KIND)
+    fun getWeatherByKind(isCurrentWeather: Int, recentlyDate: Long, limit: Int): Flow<List<WeatherEntry>>
+
+    @Query(FIRST_WEATHER_BY_KIND)
+    fun getFirstWeatherByKind(isCurrentWeather: Int, recentlyDate: Long): WeatherEntry?
+
+    /**
+     * The first current weather row from [recentlyDate], or the first forecast row if there is
+     * none, read in one transaction.
+     */
+    @Transaction
+    fun getCurrentWeatherList(recentlyDate: Long): List<WeatherEntry> {
+        val entry = getFirstWeatherByKind(WeatherEntry.CURRENT_WEATHER, recentlyDate)
+            ?: getFirstWeatherByKind(WeatherEntry.NON_CURRENT_WEATHER, recentlyDate)
+        return listOfNotNull(entry)
+    }
 
 //    @Query("SELECT id, date, weatherId, iconCodeOWM, temperature FROM weather WHERE date > :tomorrowMidnightNormalizedUtc AND (date + :offset) % (24 * :hourInMillis) BETWEEN (11 * :hourInMillis +1) AND 14 * :hourInMillis")
-    @Query("SELECT date, weatherId, iconCodeOWM, temperature FROM weather WHERE date > :tomorrowMidnightNormalizedUtc AND (date + :offset) % (24 * :hourInMillis) BETWEEN (11 * :hourInMillis +1) AND 14 * :hourInMillis")
-    fun getMidDayForecast(
-        tomorrowMidnightNormalizedUtc: Date,
-        offset: Long,
-        hourInMillis: Long
-    ): LiveData<List<ListWeatherEntry>>
+    // One entry per day after today, between 12:00 and 14:59 city time. Uses the localHour index.
+    @Query("SELECT date, weatherId, iconCode, temperature FROM weather WHERE localHour BETWEEN 12 AND 14 AND localDay > :today ORDER BY date ASC")
+    fun getMidDayForecast(today: Long): Flow<List<ListWeatherEntry>>
 
     @Query("SELECT * FROM webcams LIMIT 1")
     fun getLatestWebcam(): List<WebcamEntry>
 
     @Query("SELECT * FROM webcams")
-    fun getAllWebcamEntries(): LiveData<List<WebcamEntry>>
+    fun getAllWebcamEntries(): Flow<List<WebcamEntry>>
+
+    // The queries whose plans QueryPlanTest checks, shared with it
+    companion object {
+        const val COUNT_CURRENT_WEATHER =
+            "SELECT COUNT(*) FROM weather WHERE isCurrentWeather = 1 AND date >= :recently"
+        const val WEATHER_BY_KIND =
+            "SELECT * FROM weather WHERE isCurrentWeather = :isCurrentWeather AND date >= :recentlyDate ORDER BY date ASC LIMIT :limit"
+        const val FIRST_WEATHER_BY_KIND =
+            "SELECT * FROM weather WHERE isCurrentWeather = :isCurrentWeather AND date >= :recentlyDate ORDER BY date ASC LIMIT 1"
+    }
 }
@@ -0,0 +1,16 @@
+package com.craiovadata.android.sunshine.data.network
+
+/**
+ * Outcome of a fetch from [NetworkDataSource].
+ */
+sealed class FetchResult<out T> {
+
+    /** New data was downloaded, parsed and stored. */
+    class Updated<T>(val data: T) : FetchResult<T>()
+
+    /** The server, or the http cache, returned the data we already have. */
+    object NotModified : FetchResult<Nothing>()
+
+    /** Network error, server error or unusable payload. Worth retrying later. */
+    object Failed : FetchResult<Nothing>()
+}
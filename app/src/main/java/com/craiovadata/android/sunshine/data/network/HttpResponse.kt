@@ -0,0 +1,43 @@
+package com.craiovadata.android.sunshine.data.network
+
+import com.craiovadata.android.sunshine.data.database.Freshness
+import com.craiovadata.android.sunshine.data.database.Freshness.Resource
+import java.io.ByteArrayInputStream
+import java.io.InputStreamReader
+import java.io.Reader
+import java.nio.charset.Charset
+
+/**
+ * Successful response from the backend, as delivered by [NetworkUtils.getResponseFromHttpUrl].
+ * Carries a fingerprint of the payload (ETag, Last-Modified, or a hash of the body when the
+ * server sends no validators) so callers can tell when they are looking at data they already
+ * parsed and stored - typically a 304 or a fresh hit in the response cache. The applied
+ * fingerprints are persisted by [Freshness].
+ */
+internal class HttpResponse(
+    val url: String,
+    val data: ByteArray,
+    private val charset: Charset,
+    private val fingerprint: String,
+    private val freshness: Freshness,
+    private val resource: Resource?
+) {
+
+    val body: String
+        get() = String(data, charset)
+
+    /** Streams the payload, without building an intermediate String. */
+    fun reader(): Reader = InputStreamReader(ByteArrayInputStream(data), charset)
+
+    /**
+     * True when this payload is the last one handed to [markApplied] for the same resource.
+     * Always false for a response that isn't one of the stored resources.
+     */
+    val isUnchanged: Boolean
+        get() = resource != null && freshness.isApplied(resource, fingerprint)
+
+    /** Call once the payload has been parsed and its rows committed to the database. */
+    fun markApplied() {
+        if (resource != null) freshness.onApplied(resource, fingerprint)
+    }
+}
@@ -0,0 +1,42 @@
+package com.craiovadata.android.sunshine.data.network
+
+import android.os.SystemClock
+import com.craiovadata.android.sunshine.ui.models.WeatherEntry
+import com.craiovadata.android.sunshine.ui.models.WebcamEntry
+import kotlinx.coroutines.CompletableDeferred
+
+/**
+ * Data downloaded by [NetworkDataSource], waiting in [NetworkDataSource.ingest] to be stored.
+ * Carries the [response] it was parsed from, which is marked applied once the batch is committed.
+ */
+sealed class IngestBatch(internal val response: HttpResponse) {
+
+    /** When the batch was handed to the channel, to measure how long it waited there. */
+    val enqueuedAt = SystemClock.elapsedRealtime()
+
+    /** Completed by the repository, true once the batch is committed, false if storing it failed. */
+    internal val stored = CompletableDeferred<Boolean>()
+
+    abstract val size: Int
+
+    class Forecast internal constructor(
+        val entries: Array<WeatherEntry>,
+        response: HttpResponse
+    ) : IngestBatch(response) {
+        override val size: Int get() = entries.size
+    }
+
+    class CurrentWeather internal constructor(
+        val entries: Array<WeatherEntry>,
+        response: HttpResponse
+    ) : IngestBatch(response) {
+        override val size: Int get() = entries.size
+    }
+
+    class Webcams internal constructor(
+        val entries: Array<WebcamEntry>,
+        response: HttpResponse
+    ) : IngestBatch(response) {
+        override val size: Int get() = entries.size
+    }
+}
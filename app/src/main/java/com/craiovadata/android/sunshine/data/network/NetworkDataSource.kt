@@ -1,10 +1,11 @@
 package com.craiovadata.android.sunshine.data.network
 
 import android.content.Context
-import androidx.lifecycle.LiveData
-import androidx.lifecycle.MutableLiveData
+import android.text.format.DateUtils.HOUR_IN_MILLIS
+import android.text.format.DateUtils.MINUTE_IN_MILLIS
 import androidx.work.*
 import com.craiovadata.android.sunshine.CityData.isTestMode
+import com.craiovadata.android.sunshine.data.database.Freshness.Resource
 import com.craiovadata.android.sunshine.data.network.WebcamsWorker.Companion.WEBCAMS_WORK_PARAM_LON
 import com.craiovadata.android.sunshine.data.network.WebcamsWorker.Companion.WEBCAMS_WORK_PARAM_LAT
 import com.craiovadata.android.sunshine.ui.models.WeatherEntry
@@ -12,9 +13,19 @@ import com.craiovadata.android.sunshine.ui.models.WebcamEntry
 import com.craiovadata.android.sunshine.utilities.AppExecutors
 import com.craiovadata.android.sunshine.utilities.LogUtils.addTestText
 import com.craiovadata.android.sunshine.utilities.LogUtils.log
+import com.craiovadata.android.sunshine.utilities.LogUtils.saveCityName
 import com.craiovadata.android.sunshine.utilities.NotifUtils
+import kotlinx.coroutines.Deferred
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.GlobalScope
+import kotlinx.coroutines.async
+import kotlinx.coroutines.channels.Channel
+import kotlinx.coroutines.channels.ReceiveChannel
+import kotlinx.coroutines.withContext
 import org.json.JSONException
+import java.io.IOException
 import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
 
 /**
  * Provides an API for doing all operations with the server data
@@ -26,20 +37,18 @@ class NetworkDataSource private constructor(
 
     private val mWorkManager: WorkManager = WorkManager.getInstance(context)
 
-    // LiveData storing the latest downloaded weather forecasts
-    private val mDownloadedWeatherForecasts: MutableLiveData<Array<WeatherEntry>> =
-        MutableLiveData()
-    private val mDownloadedCurrentWeather: MutableLiveData<Array<WeatherEntry>> = MutableLiveData()
-    private val mDownloadedWebcams: MutableLiveData<Array<WebcamEntry>> = MutableLiveData()
+    // Downloaded data waiting to be stored. Unlike LiveData.postValue, a batch sent while the
+    // previous one is still pending is queued rather than dropped, and a full queue suspends
+    // the download until the repository catches up.
+    private val mIngest = Channel<IngestBatch>(INGEST_CAPACITY)
 
-    val forecasts: LiveData<Array<WeatherEntry>>
-        get() = mDownloadedWeatherForecasts
+    /** Every batch downloaded, in order. Consumed by the repository. */
+    val ingest: ReceiveChannel<IngestBatch>
+        get() = mIngest
 
-    val currentWeather: LiveData<Array<WeatherEntry>>
-        get() = mDownloadedCurrentWeather
-
-    val webcams: LiveData<Array<WebcamEntry>>
-        get() = mDownloadedWebcams
+    // Fetches currently running, keyed by request url
+    private val mInFlight = HashMap<String, Deferred<FetchResult<*>>>()
+    private val mSavedRequests = AtomicInteger()
 
     fun scheduleFetchWeather() {
 //        val input = workDataOf("some_key" to "some_val")
@@ -96,55 +105,91 @@ class NetworkDataSource private constructor(
         )
     }
 
-    fun fetchWeather(function: (success: WeatherEntry?) -> Unit) {
+    /**
+     * Downloads the 5 days / 3 hours forecast and hands it to [ingest], waiting until the
+     * repository has stored it.
+     *
+     * @return [FetchResult.Updated] with the new entries once they are stored,
+     * [FetchResult.NotModified] when the server (or the http cache) returned the forecast we
+     * already stored, [FetchResult.Failed] if the download, the parsing or the storing failed
+     */
+    suspend fun fetchWeather(): FetchResult<Array<WeatherEntry>> {
         val weatherRequestUrl = NetworkUtils.getForecastUrlString(context)
-        NetworkUtils.getResponseFromHttpUrl(context, weatherRequestUrl) { jsonWeatherResponse ->
-            try {
-                // Parse the JSON into a list of weather forecasts
-                val response = WeatherJsonParser().parseForecastWeather(jsonWeatherResponse)
-
-                log("weather JSON has ${response.weatherForecast.size} values")
-                addTestText(context, "${response.weatherForecast.size}sy")
-
-                // As long as there are weather forecasts, update the LiveData storing the most recent
-                // weather forecasts. This will trigger observers of that LiveData, such as the Repo
-
-                if (response.weatherForecast.isNullOrEmpty()) {
-                    function.invoke(null)
-                    addTestText(context, "syFailNullWe")
-                } else {
-                    val entries = response.weatherForecast
-                    mDownloadedWeatherForecasts.postValue(entries)
-                    NotifUtils.notifyIfNeeded(context, entries[0])
-                    function.invoke(entries[0])
-                }
-            } catch (e: JSONException){
-                e.printStackTrace()
+        return singleFlight(weatherRequestUrl) { downloadWeather(weatherRequestUrl) }
+    }
+
+    private suspend fun downloadWeather(weatherRequestUrl: String): FetchResult<Array<WeatherEntry>> {
+        val httpResponse = NetworkUtils.getResponse(context, weatherRequestUrl, Resource.FORECAST, FORECAST_MAX_AGE)
+            ?: return FetchResult.Failed
+        if (httpResponse.isUnchanged) {
+            // Same forecast we already parsed and stored - nothing to do
+            log("weather not modified")
+            return FetchResult.NotModified
+        }
+
+        // Parse the JSON into a list of weather forecasts
+        val response = try {
+            withContext(Dispatchers.Default) {
+                WeatherJsonParser().parseForecastWeather(httpResponse.reader())
             }
+        } catch (e: IOException) {
+            e.printStackTrace()
+            return FetchResult.Failed
+        }
 
+        log("weather JSON has ${response.weatherForecast.size} values")
+        addTestText(context, "${response.weatherForecast.size}sy")
 
+        if (response.weatherForecast.isNullOrEmpty()) {
+            addTestText(context, "syFailNullWe")
+            return FetchResult.Failed
         }
+
+        // As long as there are weather forecasts, hand them over to be stored
+        val entries = response.weatherForecast
+        if (!ingestAndWait(IngestBatch.Forecast(entries, httpResponse))) return FetchResult.Failed
+        NotifUtils.notifyIfNeeded(context, entries[0])
+        return FetchResult.Updated(entries)
     }
 
-    fun fetchWebcams(latitude: Double, longitude: Double, function: (success: Boolean) -> Unit) {
-        val weatherRequestUrl = NetworkUtils.getWebcamListUrl(context, latitude, longitude)
-        NetworkUtils.getResponseFromHttpUrl(context, weatherRequestUrl) { jsonResponse ->
-            val webcamList = WebcamJsonParser.parseWebcamsResponse(jsonResponse)
+    /**
+     * Downloads the most popular webcams around the given location and hands them to [ingest],
+     * waiting until the repository has stored them.
+     *
+     * @return same as [fetchWeather], for the webcams
+     */
+    suspend fun fetchWebcams(latitude: Double, longitude: Double): FetchResult<Array<WebcamEntry>> {
+        val webcamsRequestUrl = NetworkUtils.getWebcamListUrl(context, latitude, longitude)
+        return singleFlight(webcamsRequestUrl) { downloadWebcams(webcamsRequestUrl) }
+    }
 
-            log("webcams JSON has ${webcamList.webcams.size} values")
+    private suspend fun downloadWebcams(webcamsRequestUrl: String): FetchResult<Array<WebcamEntry>> {
+        val httpResponse = NetworkUtils.getResponse(context, webcamsRequestUrl, Resource.WEBCAMS, WEBCAMS_MAX_AGE)
+            ?: return FetchResult.Failed
+        if (httpResponse.isUnchanged) {
+            log("webcams not modified")
+            return FetchResult.NotModified
+        }
 
-            if (webcamList.webcams.isNullOrEmpty()) {
-                function.invoke(false)
-                addTestText(context, "syFailNullWebc")
-            } else {
-                addTestText(context, "syWebcOK")
-                val entries = webcamList.webcams
-                mDownloadedWebcams.postValue(entries)
-//                NotifUtils.notifyIfNeeded(context, entries[0])
-                function.invoke(true)
+        val webcamList = try {
+            withContext(Dispatchers.Default) {
+                WebcamJsonParser.parseWebcamsResponse(httpResponse.reader())
             }
+        } catch (e: IOException) {
+            e.printStackTrace()
+            return FetchResult.Failed
+        }
 
+        log("webcams JSON has ${webcamList.webcams.size} values")
+
+        if (webcamList.webcams.isNullOrEmpty()) {
+            addTestText(context, "syFailNullWebc")
+            return FetchResult.Failed
         }
+        addTestText(context, "syWebcOK")
+        val entries = webcamList.webcams
+        if (!ingestAndWait(IngestBatch.Webcams(entries, httpResponse))) return FetchResult.Failed
+        return FetchResult.Updated(entries)
     }
 
 /*
@@ -195,35 +240,98 @@ class NetworkDataSource private constructor(
 */
 
 
-    fun fetchCurrentWeather() {
+    /**
+     * Downloads the current weather and hands it to [ingest], waiting until the repository has
+     * stored it.
+     *
+     * @return same as [fetchWeather], for the current weather
+     */
+    suspend fun fetchCurrentWeather(): FetchResult<Array<WeatherEntry>> {
         val weatherRequestUrl = NetworkUtils.getUrlCurrentWeather(context)
-        NetworkUtils.getResponseFromHttpUrl(context, weatherRequestUrl) { jsonWeatherResponse ->
-            try {
-                val response = WeatherJsonParser().parseCurrentWeather(jsonWeatherResponse)
-                log("JSON Parsing finished Current Weather. Size: ${response.weatherForecast.size}")
-
-                // As long as there are weather forecasts, update the LiveData storing the most recent
-                // weather forecasts. This will trigger observers of that LiveData, such as the RepositoryWeather.
-                if (response.weatherForecast.isNotEmpty()) {
-                    val entries = response.weatherForecast
-                    mDownloadedCurrentWeather.postValue(entries)
-                    // Will eventually do something with the downloaded data
-                }
-            } catch (e: JSONException){
-                e.printStackTrace()
-            }
+        return singleFlight(weatherRequestUrl) { downloadCurrentWeather(weatherRequestUrl) }
+    }
 
+    private suspend fun downloadCurrentWeather(weatherRequestUrl: String): FetchResult<Array<WeatherEntry>> {
+        val httpResponse = NetworkUtils.getResponse(
+            context, weatherRequestUrl, Resource.CURRENT_WEATHER, CURRENT_WEATHER_MAX_AGE
+        ) ?: return FetchResult.Failed
+        if (httpResponse.isUnchanged) {
+            log("current weather not modified")
+            return FetchResult.NotModified
+        }
+
+        val response = try {
+            withContext(Dispatchers.Default) {
+                WeatherJsonParser().parseCurrentWeather(httpResponse.body)
+            }
+        } catch (e: JSONException) {
+            e.printStackTrace()
+            return FetchResult.Failed
         }
+        log("JSON Parsing finished Current Weather. Size: ${response.weatherForecast.size}")
+
+        if (response.weatherForecast.isEmpty()) return FetchResult.Failed
+
+        // As long as there is current weather, hand it over to be stored
+        val entries = response.weatherForecast
+        saveCityName(context, entries[0].cityName)
+        if (!ingestAndWait(IngestBatch.CurrentWeather(entries, httpResponse))) return FetchResult.Failed
+        return FetchResult.Updated(entries)
+    }
+
+    /* Hands [batch] over to be stored, and waits until it is committed. False if storing it failed */
+    private suspend fun ingestAndWait(batch: IngestBatch): Boolean {
+        mIngest.send(batch)
+        return batch.stored.await()
+    }
 
+    /**
+     * Runs [fetch] unless a fetch for the same [key] is already in flight, in which case the
+     * caller waits for that one instead. Every caller gets the same result. The fetch runs in
+     * its own job, so a caller giving up (e.g. a stopped worker) doesn't cancel it for the others.
+     */
+    private suspend fun <T> singleFlight(
+        key: String,
+        fetch: suspend () -> FetchResult<T>
+    ): FetchResult<T> {
+        val deferred = synchronized(mInFlight) {
+            val running = mInFlight[key]
+            if (running != null) {
+                log("joined in-flight request, ${mSavedRequests.incrementAndGet()} requests saved")
+                running
+            } else {
+                val started = GlobalScope.async { fetch() }
+                mInFlight[key] = started
+                started.invokeOnCompletion {
+                    synchronized(mInFlight) {
+                        if (mInFlight[key] === started) mInFlight.remove(key)
+                    }
+                }
+                started
+            }
+        }
+        @Suppress("UNCHECKED_CAST")
+        return deferred.await() as FetchResult<T>
     }
 
+    /** Number of network requests avoided by joining one already in flight. */
+    val savedRequestCount: Int
+        get() = mSavedRequests.get()
+
     companion object {
         private val LOG_TAG = NetworkDataSource::class.java.simpleName
-        val NUM_MIN_DATA_COUNTS = if (isTestMode) 10 else 39
 
         const val SYNC_WEATHER_WORK = "my-work-sync-weather"
         const val SYNC_WEBCAMS_WORK = "my-work-sync-webcams"
 
+        // How long a response stays fresh in the http cache when the server doesn't say
+        private const val FORECAST_MAX_AGE = HOUR_IN_MILLIS
+        private const val CURRENT_WEATHER_MAX_AGE = 10 * MINUTE_IN_MILLIS
+        private const val WEBCAMS_MAX_AGE = 6 * HOUR_IN_MILLIS
+
+        // A sync produces at most 3 batches, this leaves room for a few syncs to pile up
+        private const val INGEST_CAPACITY = 8
+
 
         // For Singleton instantiation
         private val LOCK = Any()
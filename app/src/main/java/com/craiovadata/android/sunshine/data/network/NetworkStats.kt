@@ -0,0 +1,43 @@
+package com.craiovadata.android.sunshine.data.network
+
+import com.craiovadata.android.sunshine.utilities.LogUtils.log
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Process-wide counters for the requests going through [NetworkUtils.getRequestQueue].
+ * Latency is measured from the moment a request is created until its result is delivered,
+ * so it includes the time spent waiting for a network dispatcher.
+ */
+internal object NetworkStats {
+
+    private val requestCount = AtomicLong()
+    private val errorCount = AtomicLong()
+    private val totalLatencyMs = AtomicLong()
+    private val totalNetworkTimeMs = AtomicLong()
+    private val totalBytes = AtomicLong()
+    private val unchangedCount = AtomicLong()
+
+    fun onSuccess(url: String, latencyMs: Long, networkTimeMs: Long, bytes: Int, unchanged: Boolean) {
+        requestCount.incrementAndGet()
+        if (unchanged) unchangedCount.incrementAndGet()
+        totalLatencyMs.addAndGet(latencyMs)
+        totalNetworkTimeMs.addAndGet(networkTimeMs)
+        totalBytes.addAndGet(bytes.toLong())
+        log("net OK ${latencyMs}ms (network ${networkTimeMs}ms) ${bytes}B unchanged-$unchanged $url")
+        log(summary())
+    }
+
+    fun onError(url: String, latencyMs: Long) {
+        requestCount.incrementAndGet()
+        errorCount.incrementAndGet()
+        totalLatencyMs.addAndGet(latencyMs)
+        log("net ERR ${latencyMs}ms $url")
+    }
+
+    fun summary(): String {
+        val count = requestCount.get()
+        val avgLatency = if (count == 0L) 0 else totalLatencyMs.get() / count
+        return "net stats: $count requests, ${errorCount.get()} errors, ${unchangedCount.get()} unchanged, " +
+                "avg ${avgLatency}ms, network ${totalNetworkTimeMs.get()}ms, ${totalBytes.get()}B"
+    }
+}
@@ -17,19 +17,33 @@ package com.craiovadata.android.sunshine.data.network
 
 import android.content.Context
 import android.net.Uri
+import android.os.SystemClock
+import com.android.volley.Cache
+import com.android.volley.NetworkResponse
 import com.android.volley.Request
-import com.android.volley.toolbox.StringRequest
-import com.android.volley.toolbox.Volley
+import com.android.volley.RequestQueue
+import com.android.volley.Response
+import com.android.volley.VolleyError
+import com.android.volley.toolbox.BasicNetwork
+import com.android.volley.toolbox.DiskBasedCache
+import com.android.volley.toolbox.HttpHeaderParser
+import com.android.volley.toolbox.HurlStack
 import com.craiovadata.android.sunshine.CityData.AREA_WEBCAMS
 
 import com.craiovadata.android.sunshine.R
+import com.craiovadata.android.sunshine.data.database.Freshness
+import com.craiovadata.android.sunshine.data.database.Freshness.Resource
 import com.craiovadata.android.sunshine.utilities.LogUtils.log
+import kotlinx.coroutines.suspendCancellableCoroutine
 
+import java.io.File
 import java.io.IOException
 import java.net.HttpURLConnection
 import java.net.MalformedURLException
 import java.net.URL
+import java.nio.charset.Charset
 import java.util.Scanner
+import kotlin.coroutines.resume
 
 /**
  * These utilities will be used to communicate with the weather servers.
@@ -55,6 +69,43 @@ internal object NetworkUtils {
     /* The units parameter allows us to designate whether we want metric units or imperial units */
     private const val UNITS_PARAM = "units"
 
+    /* We never have more than a few OWM / Windy calls in flight, a small pool is plenty */
+    private const val NETWORK_THREAD_POOL_SIZE = 2
+    private const val CACHE_DIR_NAME = "volley"
+    private const val CACHE_MAX_BYTES = 2 * 1024 * 1024
+
+    /* Both OWM and Windy answer in UTF-8, even when they don't say so in Content-Type */
+    private const val DEFAULT_CHARSET = "UTF-8"
+    private const val HEADER_ETAG = "ETag"
+    private const val HEADER_LAST_MODIFIED = "Last-Modified"
+
+    @Volatile
+    private var sRequestQueue: RequestQueue? = null
+
+    /**
+     * Returns the process-wide [RequestQueue]. It is built once, on first use, and shared by
+     * every caller, so we keep a single cache dispatcher, a bounded pool of network dispatchers
+     * and one disk cache for the whole app instead of spinning up new ones per request.
+     * [HurlStack] goes through HttpURLConnection, which keeps connections alive and reuses them
+     * between calls to the same host.
+     */
+    fun getRequestQueue(context: Context): RequestQueue {
+        sRequestQueue?.let { return it }
+        synchronized(this) {
+            sRequestQueue?.let { return it }
+            val cacheDir = File(context.applicationContext.cacheDir, CACHE_DIR_NAME)
+            val queue = RequestQueue(
+                DiskBasedCache(cacheDir, CACHE_MAX_BYTES),
+                BasicNetwork(HurlStack()),
+                NETWORK_THREAD_POOL_SIZE
+            )
+            queue.start()
+            sRequestQueue = queue
+            log("Made new request queue")
+            return queue
+        }
+    }
+
     fun getUrl2(mContext: Context, cityId: Int, language: String): URL? {
         val owmApiKey = mContext.getString(R.string.owm_api_key)
         return buildUrlWithLocationId2(cityId.toString(), owmApiKey, language)
@@ -165,18 +216,21 @@ internal object NetworkUtils {
         return buildUrlWeatherNowWithLocationId(owmCityId, owmApiKey)
     }
 
+    /**
+     * Fetches [urlString] through the shared [RequestQueue] and its disk cache. Cached responses
+     * are revalidated with If-None-Match / If-Modified-Since, so an unchanged payload costs a
+     * 304 instead of a full download. When the server doesn't say how long a response stays
+     * fresh, it is considered fresh for [maxAgeMillis] and served straight from the cache.
+     *
+     * @param callback invoked on the main thread, with null if the request failed
+     */
     fun getResponseFromHttpUrl(
         context: Context,
         urlString: String,
-        callback: (response: String?) -> Unit
+        maxAgeMillis: Long = 0L,
+        callback: (response: HttpResponse?) -> Unit
     ) {
-
-// Instantiate the RequestQueue.
-        val queue = Volley.newRequestQueue(context)
-
-// Request a string response from the provided URL.
-        val stringRequest = StringRequest(
-            Request.Method.GET, urlString,
+        val request = MeteredRequest(urlString, maxAgeMillis, Freshness.getInstance(context), null,
             { response ->
                 callback.invoke(response)
             },
@@ -185,9 +239,98 @@ internal object NetworkUtils {
                 callback.invoke(null)
             })
 
-// Add the request to the RequestQueue.
-        queue.add(stringRequest)
+        getRequestQueue(context).add(request)
+    }
+
+    /**
+     * Suspending variant of [getResponseFromHttpUrl]. Cancelling the calling coroutine cancels
+     * the request.
+     *
+     * @return the response, or null if the request failed
+     */
+    suspend fun getResponse(
+        context: Context,
+        urlString: String,
+        resource: Resource,
+        maxAgeMillis: Long = 0L
+    ): HttpResponse? = suspendCancellableCoroutine { continuation ->
+        val request = MeteredRequest(urlString, maxAgeMillis, Freshness.getInstance(context), resource,
+            { response ->
+                continuation.resume(response)
+            },
+            {
+                log( "That didn't work!")
+                continuation.resume(null)
+            })
+        continuation.invokeOnCancellation { request.cancel() }
+
+        getRequestQueue(context).add(request)
+    }
 
+    /**
+     * Request that hands back the raw payload as a [HttpResponse] and reports its latency (from
+     * creation to delivery) and the size of the payload to [NetworkStats].
+     */
+    private class MeteredRequest(
+        url: String,
+        private val maxAgeMillis: Long,
+        private val freshness: Freshness,
+        private val resource: Resource?,
+        private val listener: Response.Listener<HttpResponse>,
+        errorListener: Response.ErrorListener
+    ) : Request<HttpResponse>(Request.Method.GET, url, errorListener) {
+
+        private val createdAt = SystemClock.elapsedRealtime()
+        private var networkTimeMs = 0L
+        private var bytes = 0
+
+        override fun parseNetworkResponse(response: NetworkResponse): Response<HttpResponse> {
+            networkTimeMs = response.networkTimeMs
+            bytes = response.data?.size ?: 0
+            val charset = try {
+                Charset.forName(HttpHeaderParser.parseCharset(response.headers, DEFAULT_CHARSET))
+            } catch (e: IllegalArgumentException) {
+                Charsets.UTF_8
+            }
+            val httpResponse = HttpResponse(url, response.data, charset, fingerprintOf(response), freshness, resource)
+            return Response.success(httpResponse, cacheEntryOf(response))
+        }
+
+        override fun deliverResponse(response: HttpResponse) {
+            NetworkStats.onSuccess(
+                url, SystemClock.elapsedRealtime() - createdAt, networkTimeMs, bytes,
+                response.isUnchanged
+            )
+            listener.onResponse(response)
+        }
+
+        override fun deliverError(error: VolleyError?) {
+            NetworkStats.onError(url, SystemClock.elapsedRealtime() - createdAt)
+            super.deliverError(error)
+        }
+
+        /*
+         * Honors Cache-Control / Expires and the validators sent by the server. OWM and Windy
+         * mostly send none, in which case we keep the response fresh for maxAgeMillis and still
+         * store the validators for the next conditional request.
+         */
+        private fun cacheEntryOf(response: NetworkResponse): Cache.Entry? {
+            val entry = HttpHeaderParser.parseCacheHeaders(response) ?: return null
+            val now = System.currentTimeMillis()
+            if (entry.ttl <= now && maxAgeMillis > 0) {
+                entry.softTtl = now + maxAgeMillis
+                entry.ttl = entry.softTtl
+            }
+            return entry
+        }
+
+        private fun fingerprintOf(response: NetworkResponse): String {
+            val headers = response.headers
+            headers?.get(HEADER_ETAG)?.let { return it }
+            headers?.get(HEADER_LAST_MODIFIED)?.let { return it }
+            val data = response.data ?: return ""
+            return "${data.size}:${data.contentHashCode()}"
+        }
     }
 
-}
\ No newline at end of file
+}
@@ -1,28 +1,40 @@
 package com.craiovadata.android.sunshine.data.network
 
+import android.util.JsonReader
 import com.craiovadata.android.sunshine.BuildConfig
 import com.craiovadata.android.sunshine.ui.models.WeatherEntry
 import com.craiovadata.android.sunshine.ui.models.WeatherEntry.Companion.CURRENT_WEATHER
+import com.craiovadata.android.sunshine.utilities.LogUtils.log
+import com.craiovadata.android.sunshine.utilities.SunshineWeatherUtils
 import org.json.JSONException
 import org.json.JSONObject
+import java.io.IOException
+import java.io.Reader
 import java.net.HttpURLConnection
-import java.util.*
 
 /**
  * Parser for OpenWeatherMap JSON data.
  */
 internal class WeatherJsonParser {
 
-    @Throws(JSONException::class)
-    fun parseForecastWeather(forecastJsonStr: String?): WeatherResponse {
-        if (forecastJsonStr == null) return WeatherResponse(emptyArray())
-        val forecastJson = JSONObject(forecastJsonStr)
-        // Is there an error?
-        if (hasHttpError(forecastJson)) {
-            return WeatherResponse(emptyArray())
+    /**
+     * Pull-parses the 5 days / 3 hours forecast straight from the response stream. Only the
+     * fields we store are read, the rest (clouds, sys, dt_txt, ...) are skipped without being
+     * materialized, and the entries go into an array sized from the "cnt" field.
+     */
+    @Throws(IOException::class)
+    fun parseForecastWeather(forecastJson: Reader?): WeatherResponse {
+        if (forecastJson == null) return WeatherResponse(emptyArray())
+        JsonReader(forecastJson).use { reader ->
+            try {
+                return WeatherResponse(readForecast(reader))
+            } catch (e: IllegalStateException) {
+                // thrown by JsonReader when a token has an unexpected type
+                throw IOException(e)
+            } catch (e: NumberFormatException) {
+                throw IOException(e)
+            }
         }
-        val weatherForecast = fromJsonForecast(forecastJson)
-        return WeatherResponse(weatherForecast)
     }
 
     @Throws(JSONException::class)
@@ -40,6 +52,11 @@ internal class WeatherJsonParser {
     companion object {
         // Weather information. Each day's forecast info is an element of the "list" array
         private const val OWM_LIST = "list"
+        private const val OWM_COUNT = "cnt"
+        private const val OWM_CITY = "city"
+        private const val OWM_COORD = "coord"
+        private const val OWM_LAT = "lat"
+        private const val OWM_LON = "lon"
         private const val OWM_MAIN = "main"
         private const val OWM_DAY_TIME = "dt"
         private const val OWM_WIND = "wind"
@@ -55,6 +72,11 @@ internal class WeatherJsonParser {
         private const val OWM_MESSAGE_CODE = "cod"
         private const val OWM_ICON = "icon"
 
+        // 5 days of 3 hours steps, used when the response doesn't start with "cnt"
+        private const val DEFAULT_FORECAST_COUNT = 40
+        // The most steps OWM returns, "cnt" is only a sizing hint and is never trusted past it
+        private const val MAX_FORECAST_ENTRIES = 40
+
         @Throws(JSONException::class)
         private fun hasHttpError(forecastJson: JSONObject): Boolean {
             if (forecastJson.has(OWM_MESSAGE_CODE)) {
@@ -71,73 +93,157 @@ internal class WeatherJsonParser {
         }
 
         // OWM 5days 3 hours
-        @Throws(JSONException::class)
-        private fun fromJsonForecast(forecastJson: JSONObject): Array<WeatherEntry> {
-            val jsonWeatherArray =
-                forecastJson.getJSONArray(OWM_LIST)
-            val weatherEntries = mutableListOf<WeatherEntry>()
-//                arrayOfNulls<WeatherEntry>(jsonWeatherArray.length())
-            /*
-         * OWM returns daily forecasts based upon the local time of the city1 that is being asked
-         * for, which means that we need to know the GMT offset to translate this data properly.
-         * Since this data is also sent in-order and the first day is always the current day, we're
-         * going to take advantage of that to get a nice normalized UTC _date for all of our weather.
-         */
-//        long normalizedUtcStartDay = SunshineDateUtils.getNormalizedUtcMsForToday();
-            val coordObj = forecastJson.getJSONObject("city").getJSONObject("coord")
-            val lat = coordObj.getDouble("lat").toFloat()
-            val lon = coordObj.getDouble("lon").toFloat()
-            for (i in 0 until jsonWeatherArray.length()) { // Get the JSON object representing the day
-                val dayForecast = jsonWeatherArray.getJSONObject(i)
-                val weather =
-                    fromJsonForecast(dayForecast, lat, lon)
-//                weatherEntries[i] = weather
-                weatherEntries.add(i, weather)
+        private fun readForecast(reader: JsonReader): Array<WeatherEntry> {
+            var entries: Array<WeatherEntry?> = arrayOfNulls(0)
+            var count = 0
+            var expectedCount = DEFAULT_FORECAST_COUNT
+            var lat = 0f
+            var lon = 0f
+
+            reader.beginObject()
+            while (reader.hasNext()) {
+                when (reader.nextName()) {
+                    // Is there an error?
+                    OWM_MESSAGE_CODE -> if (reader.nextInt() != HttpURLConnection.HTTP_OK) {
+                        return emptyArray()
+                    }
+                    OWM_COUNT -> expectedCount = reader.nextInt()
+                    OWM_LIST -> {
+                        entries = arrayOfNulls(expectedCount.coerceIn(0, MAX_FORECAST_ENTRIES))
+                        reader.beginArray()
+                        while (reader.hasNext()) {
+                            val entry = readForecastEntry(reader) ?: continue
+                            if (count == entries.size) entries = entries.copyOf(count * 2 + 1)
+                            entries[count++] = entry
+                        }
+                        reader.endArray()
+                    }
+                    OWM_CITY -> {
+                        reader.beginObject()
+                        while (reader.hasNext()) {
+                            if (reader.nextName() != OWM_COORD) {
+                                reader.skipValue()
+                                continue
+                            }
+                            reader.beginObject()
+                            while (reader.hasNext()) {
+                                when (reader.nextName()) {
+                                    OWM_LAT -> lat = reader.nextDouble().toFloat()
+                                    OWM_LON -> lon = reader.nextDouble().toFloat()
+                                    else -> reader.skipValue()
+                                }
+                            }
+                            reader.endObject()
+                        }
+                        reader.endObject()
+                    }
+                    else -> reader.skipValue()
+                }
+            }
+            reader.endObject()
+
+            // "city" comes after "list" in the response, so the location is filled in last
+            if (count < entries.size) entries = entries.copyOf(count)
+            @Suppress("UNCHECKED_CAST")
+            val weatherEntries = entries as Array<WeatherEntry>
+            for (entry in weatherEntries) {
+                entry.lat = lat.toDouble()
+                entry.lon = lon.toDouble()
             }
-            return weatherEntries.toTypedArray()
+            return weatherEntries
         }
 
-        // OWM 5days 3 hours
-        @Throws(JSONException::class)
-        private fun fromJsonForecast(
-            dayForecast: JSONObject,
-            lat: Float,
-            lon: Float
-        ): WeatherEntry { // We ignore all the datetime values embedded in the JSON and assume that
-// the values are returned in-order by day (which is not guaranteed to be correct).
-            val dateTimeMillis =
-                dayForecast.getLong(OWM_DAY_TIME) * 1000
-            val mainObject =
-                dayForecast.getJSONObject(OWM_MAIN)
-            val pressure =
-                mainObject.getDouble(OWM_PRESSURE)
-            val humidity = mainObject.getInt(OWM_HUMIDITY)
-            val max = mainObject.getDouble(OWM_TEMP)
-            val windObject =
-                dayForecast.getJSONObject(OWM_WIND)
-            val windSpeed =
-                windObject.getDouble(OWM_WINDSPEED)
-            val windDirection =
-                windObject.getDouble(OWM_WIND_DIRECTION)
-            // Description is in a child array called "weather", which is city_1 element long.
-// That element also contains a weather code.
-            val weatherObject =
-                dayForecast.getJSONArray(OWM_WEATHER).getJSONObject(0)
-            val weatherId = weatherObject.getInt(OWM_WEATHER_ID)
-            val icon = weatherObject.getString(OWM_ICON)
-            //        Log.d("TAG", iconCodeOWM);
-// Create the weather entry object
+        /*
+         * OWM 5days 3 hours. Returns null for an entry without "dt", "main.temp" or "weather[0]",
+         * which would otherwise be stored as a zero degrees, unknown weather entry.
+         */
+        private fun readForecastEntry(reader: JsonReader): WeatherEntry? {
+            var dateTimeMillis = 0L
+            var hasDate = false
+            var temperature = 0.0
+            var hasTemperature = false
+            var hasWeather = false
+            var pressure = 0.0
+            var humidity = 0
+            var windSpeed = 0.0
+            var windDirection = 0.0
+            var weatherId = 0
+            var icon = SunshineWeatherUtils.ICON_UNKNOWN
+
+            reader.beginObject()
+            while (reader.hasNext()) {
+                when (reader.nextName()) {
+                    OWM_DAY_TIME -> {
+                        dateTimeMillis = reader.nextLong() * 1000
+                        hasDate = true
+                    }
+                    OWM_MAIN -> {
+                        reader.beginObject()
+                        while (reader.hasNext()) {
+                            when (reader.nextName()) {
+                                OWM_TEMP -> {
+                                    temperature = reader.nextDouble()
+                                    hasTemperature = true
+                                }
+                                OWM_PRESSURE -> pressure = reader.nextDouble()
+                                OWM_HUMIDITY -> humidity = reader.nextInt()
+                                else -> reader.skipValue()
+                            }
+                        }
+                        reader.endObject()
+                    }
+                    OWM_WIND -> {
+                        reader.beginObject()
+                        while (reader.hasNext()) {
+                            when (reader.nextName()) {
+                                OWM_WINDSPEED -> windSpeed = reader.nextDouble()
+                                OWM_WIND_DIRECTION -> windDirection = reader.nextDouble()
+                                else -> reader.skipValue()
+                            }
+                        }
+                        reader.endObject()
+                    }
+                    // Description is in a child array called "weather". Only its first element,
+                    // which also contains the weather code, is of interest.
+                    OWM_WEATHER -> {
+                        reader.beginArray()
+                        if (reader.hasNext()) {
+                            hasWeather = true
+                            reader.beginObject()
+                            while (reader.hasNext()) {
+                                when (reader.nextName()) {
+                                    OWM_WEATHER_ID -> weatherId = reader.nextInt()
+                                    OWM_ICON -> icon = SunshineWeatherUtils.getIconCode(reader.nextString())
+                                    else -> reader.skipValue()
+                                }
+                            }
+                            reader.endObject()
+                        }
+                        while (reader.hasNext()) reader.skipValue()
+                        reader.endArray()
+                    }
+                    else -> reader.skipValue()
+                }
+            }
+            reader.endObject()
+
+            if (!hasDate || !hasTemperature || !hasWeather) {
+                log("forecast entry without dt, main.temp or weather, skipped")
+                return null
+            }
+
+            // lat / lon are set once the "city" object has been read
             return WeatherEntry(
                 weatherId,
-                Date(dateTimeMillis),
-                max,
+                dateTimeMillis,
+                temperature,
                 humidity.toDouble(),
                 pressure,
                 windSpeed,
                 windDirection,
                 icon,
-                lat.toDouble(),
-                lon.toDouble()
+                0.0,
+                0.0
             )
         }
 
@@ -192,10 +298,9 @@ internal class WeatherJsonParser {
             } catch (e: JSONException) {
                 e.printStackTrace()
             }
-            val iconCode = weatherObj.getString(OWM_ICON)
+            val iconCode = SunshineWeatherUtils.getIconCode(weatherObj.getString(OWM_ICON))
             val dateTimeMillis =
                 jsonCurrentWeather.getLong(OWM_DAY_TIME) * 1000
-            val wDate = Date(dateTimeMillis)
 
             val sunrise = jsonCurrentWeather.getJSONObject("sys").getLong("sunrise")
             val sunset = jsonCurrentWeather.getJSONObject("sys").getLong("sunset")
@@ -205,7 +310,7 @@ internal class WeatherJsonParser {
                 val cityName = jsonCurrentWeather.getString("name")
                 return WeatherEntry(
                     weatherId,
-                    wDate,
+                    dateTimeMillis,
                     temp,
                     humidity.toDouble(),
                     pressure,
@@ -221,7 +326,7 @@ internal class WeatherJsonParser {
             }
             return WeatherEntry(
                 weatherId,
-                wDate,
+                dateTimeMillis,
                 temp,
                 humidity.toDouble(),
                 pressure,
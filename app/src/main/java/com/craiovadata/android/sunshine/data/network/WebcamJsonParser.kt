@@ -1,62 +1,132 @@
-
 package com.craiovadata.android.sunshine.data.network
 
+import android.util.JsonReader
 import com.craiovadata.android.sunshine.ui.models.WebcamEntry
-import org.json.JSONException
-import org.json.JSONObject
-import java.util.*
+import java.io.IOException
+import java.io.Reader
 
+/**
+ * Pull parser for the Windy webcams list. Only id, title, image.update and
+ * image.current.preview are materialized, everything else (location, the other image sizes,
+ * daylight images, ...) is skipped as it streams by.
+ */
 internal class WebcamJsonParser {
 
     companion object {
         private const val STATUS = "status"
         private const val STATUS_OK = "OK"
+        private const val RESULT = "result"
+        private const val LIMIT = "limit"
+        private const val WEBCAMS = "webcams"
+        private const val ID = "id"
+        private const val TITLE = "title"
+        private const val IMAGE = "image"
+        private const val UPDATE = "update"
+        private const val CURRENT = "current"
+        private const val PREVIEW = "preview"
 
-        @Throws(JSONException::class)
-        private fun hasHttpError(forecastJson: JSONObject): Boolean {
-            if (forecastJson.has(STATUS) && forecastJson.getString(STATUS) == STATUS_OK ) return false
-            return true
-        }
+        // Windy's default page size, used when "limit" doesn't come before "webcams"
+        private const val DEFAULT_WEBCAMS_COUNT = 10
+        // Windy's largest page size, "limit" is only a sizing hint and is never trusted past it
+        private const val MAX_WEBCAMS = 50
+
+        private fun readResult(reader: JsonReader): Array<WebcamEntry> {
+            var webcams: Array<WebcamEntry?> = arrayOfNulls(0)
+            var count = 0
+            var expectedCount = DEFAULT_WEBCAMS_COUNT
 
-        @Throws(JSONException::class)
-        private fun fromJsonWebcams(webcamJson: JSONObject): Array<WebcamEntry> {
-            val result = webcamJson.getJSONObject("result")
-            val jsonWebcamArray = result.getJSONArray("webcams")
-            val webcamEntries = mutableListOf<WebcamEntry>()
-
-            for (i in 0 until jsonWebcamArray.length()) { // Get the JSON object representing the day
-                val jsonWebcam = jsonWebcamArray.getJSONObject(i)
-                val webcam = fromJsonWebcam(jsonWebcam, i)
-//                weatherEntries[i] = weather
-                webcamEntries.add(i, webcam)
+            reader.beginObject()
+            while (reader.hasNext()) {
+                when (reader.nextName()) {
+                    LIMIT -> expectedCount = reader.nextInt()
+                    WEBCAMS -> {
+                        webcams = arrayOfNulls(expectedCount.coerceIn(0, MAX_WEBCAMS))
+                        reader.beginArray()
+                        while (reader.hasNext()) {
+                            if (count == webcams.size) webcams = webcams.copyOf(count * 2 + 1)
+                            webcams[count++] = readWebcam(reader)
+                        }
+                        reader.endArray()
+                    }
+                    else -> reader.skipValue()
+                }
             }
-            return webcamEntries.toTypedArray()
+            reader.endObject()
+
+            if (count < webcams.size) webcams = webcams.copyOf(count)
+            @Suppress("UNCHECKED_CAST")
+            return webcams as Array<WebcamEntry>
         }
 
-        @Throws(JSONException::class)
-        private fun fromJsonWebcam(jsonWebcam: JSONObject, i: Int): WebcamEntry{
-            val webcamId = jsonWebcam.getString("id")
-//            val statusActive = jsonWebcam.getString("status") == "active"
-            val title = jsonWebcam.getString("title")
-            val imageObj = jsonWebcam.getJSONObject("image")
-            val updateMilli = imageObj.getLong("update") * 1000
-            val previewUrl = imageObj.getJSONObject("current").getString("preview")
+        private fun readWebcam(reader: JsonReader): WebcamEntry {
+            var webcamId = ""
+            var title = ""
+            var updateMilli = 0L
+            var previewUrl = ""
 
-            return WebcamEntry(webcamId, title, Date(updateMilli), previewUrl)
+            reader.beginObject()
+            while (reader.hasNext()) {
+                when (reader.nextName()) {
+                    ID -> webcamId = reader.nextString()
+                    TITLE -> title = reader.nextString()
+                    IMAGE -> {
+                        reader.beginObject()
+                        while (reader.hasNext()) {
+                            when (reader.nextName()) {
+                                UPDATE -> updateMilli = reader.nextLong() * 1000
+                                CURRENT -> previewUrl = readPreview(reader)
+                                else -> reader.skipValue()
+                            }
+                        }
+                        reader.endObject()
+                    }
+                    else -> reader.skipValue()
+                }
+            }
+            reader.endObject()
+
+            return WebcamEntry(webcamId, title, updateMilli, previewUrl)
+        }
+
+        private fun readPreview(reader: JsonReader): String {
+            var previewUrl = ""
+            reader.beginObject()
+            while (reader.hasNext()) {
+                if (reader.nextName() == PREVIEW) previewUrl = reader.nextString()
+                else reader.skipValue()
+            }
+            reader.endObject()
+            return previewUrl
         }
 
-        @Throws(JSONException::class)
-        fun parseWebcamsResponse(jsonString: String?): WebcamResponse {
-            if (jsonString == null) return WebcamResponse(emptyArray())
-            val webcamJson = JSONObject(jsonString)
-            // Is there an error?
-            if (hasHttpError(webcamJson) ){
-                return WebcamResponse(emptyArray())
+        @Throws(IOException::class)
+        fun parseWebcamsResponse(json: Reader?): WebcamResponse {
+            if (json == null) return WebcamResponse(emptyArray())
+            JsonReader(json).use { reader ->
+                try {
+                    var status: String? = null
+                    var webcams: Array<WebcamEntry> = emptyArray()
+                    reader.beginObject()
+                    while (reader.hasNext()) {
+                        when (reader.nextName()) {
+                            STATUS -> status = reader.nextString()
+                            RESULT -> webcams = readResult(reader)
+                            else -> reader.skipValue()
+                        }
+                    }
+                    reader.endObject()
+                    // Is there an error?
+                    if (status != STATUS_OK) return WebcamResponse(emptyArray())
+                    return WebcamResponse(webcams)
+                } catch (e: IllegalStateException) {
+                    // thrown by JsonReader when a token has an unexpected type
+                    throw IOException(e)
+                } catch (e: NumberFormatException) {
+                    throw IOException(e)
+                }
             }
-            val webcamsData = fromJsonWebcams(webcamJson)
-            return WebcamResponse(webcamsData)
         }
 
 
     }
-}
\ No newline at end of file
+}
@@ -1,18 +1,14 @@
 package com.craiovadata.android.sunshine.data.network
 
 import android.content.Context
-import androidx.work.Worker
+import androidx.work.CoroutineWorker
 import androidx.work.WorkerParameters
 import com.craiovadata.android.sunshine.utilities.InjectorUtils
 import com.craiovadata.android.sunshine.utilities.LogUtils.addTestText
-import java.util.concurrent.CountDownLatch
-import java.util.concurrent.TimeUnit
 
-class WebcamsWorker(context: Context, params: WorkerParameters) : Worker(context, params) {
-    private var latch: CountDownLatch? = null
-    private val MAX_WAIT_TIME_SECONDS = 10L
+class WebcamsWorker(context: Context, params: WorkerParameters) : CoroutineWorker(context, params) {
 
-    override fun doWork(): Result {
+    override suspend fun doWork(): Result {
         addTestText(applicationContext, "wkWebc")
 
         val defaultLatLon = 0.0
@@ -20,26 +16,14 @@ class WebcamsWorker(context: Context, params: WorkerParameters) : Worker(context
         val lon = inputData.getDouble(WEBCAMS_WORK_PARAM_LON, defaultLatLon)
         if (lat == defaultLatLon || lon == defaultLatLon) return Result.failure()
 
-        latch = CountDownLatch(1)
-        return try {
-            val networkDataSource = InjectorUtils.provideNetworkDataSource(applicationContext)
-//            networkDataSource.fetchWeather()
-            networkDataSource.fetchWebcams(lat, lon) {success ->
-                if (!success){
-                    addTestText(applicationContext, "wkWebcRetry")
-                    Result.retry()
-                }
-                latch?.countDown()
+        val networkDataSource = InjectorUtils.provideNetworkDataSource(applicationContext)
+        return when (networkDataSource.fetchWebcams(lat, lon)) {
+            is FetchResult.Failed -> {
+                addTestText(applicationContext, "wkWebcRetry")
+                Result.retry()
             }
-
-            latch?.await(MAX_WAIT_TIME_SECONDS, TimeUnit.SECONDS)
-            Result.success()
-        } catch (e: Error) {
-            addTestText(applicationContext, "wkWebcEr:$e")
-//            Result.failure()
-            Result.retry()
+            else -> Result.success()
         }
-
     }
 
     companion object {
@@ -47,4 +31,4 @@ class WebcamsWorker(context: Context, params: WorkerParameters) : Worker(context
         const val WEBCAMS_WORK_PARAM_LON = "key_wk_lon"
     }
 
-}
\ No newline at end of file
+}
@@ -2,41 +2,115 @@ package com.craiovadata.android.sunshine.ui.adpterModels
 
 import android.animation.ValueAnimator
 import android.view.View
-import android.view.animation.Animation
 import android.widget.Toast
+import androidx.lifecycle.Lifecycle
+import androidx.lifecycle.LifecycleObserver
+import androidx.lifecycle.OnLifecycleEvent
+import androidx.lifecycle.ProcessLifecycleOwner
 import com.craiovadata.android.sunshine.R
 import com.craiovadata.android.sunshine.ui.models.WeatherEntry
+import com.craiovadata.android.sunshine.ui.models.WeatherDisplay
 import com.craiovadata.android.sunshine.utilities.SunshineWeatherUtils
-import com.craiovadata.android.sunshine.utilities.SunshineWeatherUtils.NO_DEGREE_WIND
 import kotlinx.android.synthetic.main.card_current_weather.view.*
 import java.util.*
 
 //(val weatherId: Int, val date: Date, val temperature: Double, val iconCodeOWM: String)
-data class CurrentWeather(val weatherEntry: WeatherEntry) :
+data class CurrentWeather(val weatherEntry: WeatherEntry, val display: WeatherDisplay) :
     Base(
 //        weatherEntry.date.time ,
         TYPE.WEATHER) {
 
+    /**
+     * Turns the windmill rotor of a card view, owned by its view holder. One animator is reused
+     * across binds, a bind only retunes its speed and direction. It runs only while the card is
+     * attached and the app is in the foreground, on a hardware layer.
+     */
+    class MillAnimation(cardView: View) : View.OnAttachStateChangeListener, LifecycleObserver {
+
+        private val rotor: View? = cardView.findViewById(R.id.rotor_mill)
+        private var endAngle = 0f
+        private var isAttached = false
+        private var isForeground = false
+
+        private val animator = ValueAnimator.ofFloat(0f, 1f).apply {
+            interpolator = null
+            repeatCount = ValueAnimator.INFINITE
+            addUpdateListener { rotor?.rotation = it.animatedFraction * endAngle }
+        }
+
+        init {
+            rotor?.addOnAttachStateChangeListener(this)
+            if (rotor?.isAttachedToWindow == true) onViewAttachedToWindow(rotor)
+        }
+
+        fun bind(entry: WeatherEntry) {
+            if (rotor == null) return
+            endAngle = if (entry.degrees < 180) -360f else 360f
+            val duration = (20000 / normalizeWind(entry.wind)).toLong()
+            if (duration != animator.duration) {
+                // Keep the rotor where it is, only change its speed
+                val fraction = animator.animatedFraction
+                animator.duration = duration
+                if (animator.isStarted) animator.currentPlayTime = (fraction * duration).toLong()
+            }
+            updateRunning()
+        }
+
+        override fun onViewAttachedToWindow(v: View) {
+            isAttached = true
+            // Delivers ON_START right away if the app is in the foreground
+            ProcessLifecycleOwner.get().lifecycle.addObserver(this)
+            updateRunning()
+        }
+
+        override fun onViewDetachedFromWindow(v: View) {
+            isAttached = false
+            ProcessLifecycleOwner.get().lifecycle.removeObserver(this)
+            updateRunning()
+        }
+
+        @OnLifecycleEvent(Lifecycle.Event.ON_START)
+        fun onStart() {
+            isForeground = true
+            updateRunning()
+        }
+
+        @OnLifecycleEvent(Lifecycle.Event.ON_STOP)
+        fun onStop() {
+            isForeground = false
+            updateRunning()
+        }
+
+        private fun updateRunning() {
+            val rotor = rotor ?: return
+            if (isAttached && isForeground && endAngle != 0f) {
+                if (rotor.layerType != View.LAYER_TYPE_HARDWARE) rotor.setLayerType(View.LAYER_TYPE_HARDWARE, null)
+                when {
+                    !animator.isStarted -> animator.start()
+                    animator.isPaused -> animator.resume()
+                }
+            } else if (animator.isRunning) {
+                animator.pause()
+                rotor.setLayerType(View.LAYER_TYPE_NONE, null)
+            }
+        }
+    }
+
     companion object {
 
         @JvmStatic
-        fun bindWeatherToUI(entry: WeatherEntry?, cardView: View) {
+        fun bindWeatherToUI(entry: WeatherEntry?, display: WeatherDisplay, cardView: View) {
             if (entry == null) return
             /****************
              * Weather Icon *
              */
-            val weatherId = entry.weatherId
             //        int weatherImageId = SunshineWeatherUtils.getLargeArtResourceIdForWeatherCondition(weatherId);
-            val iconId = entry.iconCodeOWM
+            val iconId = entry.iconCode
 //            val iconId = "01n"
             val weatherImageId = SunshineWeatherUtils.getLargeArtResourceIdForIconCode(iconId)
-            val weatherDescription =
-                SunshineWeatherUtils.getStringForWeatherCondition(cardView.context, weatherId)
-            val weatherIconDescription =
-                cardView.context.getString(R.string.a11y_forecast_icon, weatherDescription)
 
             cardView.weatherIcon.setImageResource(weatherImageId)
-            cardView.weatherIcon.contentDescription = weatherIconDescription
+            cardView.weatherIcon.contentDescription = display.iconDescription
 
             /****************
              * Weather Date *
@@ -68,61 +142,30 @@ data class CurrentWeather(val weatherEntry: WeatherEntry) :
             /***********************
              * Weather Description *
              */
-            /* Use the weatherId to obtain the proper description */
-            val description =
-                SunshineWeatherUtils.getStringForWeatherCondition(cardView.context, weatherId)
-
-            /* Create the accessibility (a11y) String from the weather description */
-            val descriptionA11y = cardView.context.getString(R.string.a11y_forecast, description)
-
             /* Set the text and content description (for accessibility purposes) */
-            cardView.weatherDescription.text = description
-            cardView.weatherDescription.contentDescription = descriptionA11y
+            cardView.weatherDescription.text = display.description
+            cardView.weatherDescription.contentDescription = display.descriptionA11y
 
             /* Set the content description on the weather image (for accessibility purposes) */
-            cardView.weatherIcon.contentDescription = descriptionA11y
+            cardView.weatherIcon.contentDescription = display.descriptionA11y
 
             /**************************
              * High (max) temperature *
              */
 
-            val maxInCelsius = entry.temperature
-
-            /*
-             * If the user's preference for weather is fahrenheit, formatTemperature will convert
-             * the temperature. This method will also append either °C or °F to the temperature
-             * String.
-             */
-            val highString = SunshineWeatherUtils.formatTemperature(cardView.context, maxInCelsius)
-
-            /* Create the accessibility (a11y) String from the weather description */
-            val highA11y = cardView.context.getString(R.string.a11y_high_temp, highString)
-
-            /* Set the text and content description (for accessibility purposes) */
-            cardView.temperatureText.text = highString
-            cardView.temperatureText.contentDescription = highA11y
+            /* Formatted in the units of the user's preference, see DisplayModels */
+            cardView.temperatureText.text = display.temperature
+            cardView.temperatureText.contentDescription = display.temperatureA11y
 
 
             /****************************
              * Wind speed and direction *
              */
-            val windSpeed = entry.wind
-//            val windDirection = entry.degrees
-            val windDirection = NO_DEGREE_WIND
-            val windString =
-                SunshineWeatherUtils.getFormattedWind(cardView.context, windSpeed, windDirection)
-            val windA11y = cardView.context.getString(R.string.a11y_wind, windString)
-
-            cardView.wind_measurement.text = windString
-            cardView.wind_measurement.contentDescription = windA11y
+            // Speed only, the mill shows the direction
+            cardView.wind_measurement.text = display.windSpeed
+            cardView.wind_measurement.contentDescription = display.windSpeedA11y
 //            cardView.wind_label.contentDescription = windA11y
 
-
-            rotateMill(
-                cardView,
-                entry
-            )
-
             cardView.wind_layout_current.setOnClickListener {
                 val text = cardView.context.getString(R.string.wind_label)
                 Toast.makeText(it.context, text, Toast.LENGTH_SHORT).show()
@@ -130,28 +173,6 @@ data class CurrentWeather(val weatherEntry: WeatherEntry) :
 
         }
 
-        private fun rotateMill(cardView: View, entry: WeatherEntry) {
-
-            val millRotorView = cardView.findViewById(R.id.rotor_mill) as View? ?: return
-
-            var endAngle = 360f
-            if (entry.degrees < 180) endAngle = -endAngle
-            val animator = ValueAnimator.ofFloat(0f, endAngle)
-            animator.addUpdateListener { animation ->
-                millRotorView.rotation = animation.animatedValue as Float
-            }
-            val normalisedWindSpeed =
-                normalizeWind(
-                    entry.wind
-                )
-//            val normalisedWindSpeed = 12.0
-            val duration = 20000 / normalisedWindSpeed
-            animator.duration = duration.toLong()
-            animator.interpolator = null
-            animator.repeatCount = Animation.INFINITE
-            animator.start()
-        }
-
         private fun normalizeWind(windSpeed: Double): Double {
             return if (windSpeed < 4) 4.0 else if (windSpeed > 12) 12.0 else windSpeed
         }
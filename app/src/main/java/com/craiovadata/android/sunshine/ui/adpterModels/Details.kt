@@ -2,7 +2,6 @@ package com.craiovadata.android.sunshine.ui.adpterModels
 
 import android.content.Context
 import android.os.Handler
-import android.text.format.DateFormat
 import android.util.DisplayMetrics
 import android.view.View
 import android.widget.TextView
@@ -10,16 +9,14 @@ import com.craiovadata.android.sunshine.CityData
 import com.craiovadata.android.sunshine.R
 import com.craiovadata.android.sunshine.ui.models.WeatherEntry
 import com.craiovadata.android.sunshine.ui.models.WeatherEntry.Companion.CURRENT_WEATHER
-import com.craiovadata.android.sunshine.utilities.SunshineWeatherUtils
+import com.craiovadata.android.sunshine.ui.models.WeatherDisplay
 import kotlinx.android.synthetic.main.card_details_weather.view.*
 import java.lang.System.currentTimeMillis
-import java.text.SimpleDateFormat
-import java.util.*
 import kotlin.math.pow
 import kotlin.math.roundToInt
 
 
-data class Details(val weatherEntry: WeatherEntry) :
+data class Details(val weatherEntry: WeatherEntry, val display: WeatherDisplay) :
     Base(
 //        weatherEntry.date.time,
         TYPE.DETAILS) {
@@ -27,52 +24,31 @@ data class Details(val weatherEntry: WeatherEntry) :
     companion object {
 
         @JvmStatic
-        fun bindWeatherToUI(entry: WeatherEntry?, cardView: View) {
+        fun bindWeatherToUI(entry: WeatherEntry?, display: WeatherDisplay, cardView: View) {
             if (entry == null) return
             /************
              * Humidity *
              */
 
-            val humidity = entry.humidity
-            val humidityString = cardView.context.getString(R.string.format_humidity, humidity)
-            val humidityA11y = cardView.context.getString(R.string.a11y_humidity, humidityString)
-
             /* Set the text and content description (for accessibility purposes) */
-            cardView.humidity_measurement.text = humidityString
-            cardView.humidity_measurement.contentDescription = humidityA11y
+            cardView.humidity_measurement.text = display.humidity
+            cardView.humidity_measurement.contentDescription = display.humidityA11y
 
-            cardView.humidity_label.contentDescription = humidityA11y
+            cardView.humidity_label.contentDescription = display.humidityA11y
 
             /****************************
              * Wind speed and direction *
              */
-            val windSpeed = entry.wind
-            val windDirection = entry.degrees
-            val windString =
-                SunshineWeatherUtils.getFormattedWind(cardView.context, windSpeed, windDirection)
-            val windA11y = cardView.context.getString(R.string.a11y_wind, windString)
-
-            cardView.wind_measurement.text = windString
-            cardView.wind_measurement.contentDescription = windA11y
-            cardView.wind_label.contentDescription = windA11y
+            cardView.wind_measurement.text = display.wind
+            cardView.wind_measurement.contentDescription = display.windA11y
+            cardView.wind_label.contentDescription = display.windA11y
 
 
             // pressure
-            /*
-             * Format the pressure text using string resources. The reason we directly access
-             * resources using getString rather than using a method from SunshineWeatherUtils as
-             * we have for other data displayed in this Activity is because there is no
-             * additional logic that needs to be considered in order to properly display the
-             * pressure.
-             */
-            val pressure = entry.pressure
-            val pressureString = cardView.context.getString(R.string.format_pressure, pressure)
-            val pressureA11y = cardView.context.getString(R.string.a11y_pressure, pressureString)
-
             /* Set the text and content description (for accessibility purposes) */
-            cardView.pressure_details.text = pressureString
-            cardView.pressure_details.contentDescription = pressureA11y
-            cardView.pressure_label.contentDescription = pressureA11y
+            cardView.pressure_details.text = display.pressure
+            cardView.pressure_details.contentDescription = display.pressureA11y
+            cardView.pressure_label.contentDescription = display.pressureA11y
 
             positionSunOnHorizont(
                 entry,
@@ -139,29 +115,14 @@ data class Details(val weatherEntry: WeatherEntry) :
             sunView.x = x - sunDim / 2 //+ padding
             sunView.y = y - sunDim / 2
 
-            val localFormat = DateFormat.getBestDateTimePattern(Locale.getDefault(), "HH mm")
-            val citySunrise: Long =
-                sunriseMillsUTC + getCityOffsetMillis() - getDeviceUTCoffset() // sdf aduce timp de pe disp  >> - DateUtils.getDeviceUTCoffset()
-            val citySunset: Long = sunsetMillsUTC + getCityOffsetMillis() - getDeviceUTCoffset()
-            val readableSunrise =
-                SimpleDateFormat(localFormat, Locale.getDefault()).format(citySunrise)
-            val readableSunset =
-                SimpleDateFormat(localFormat, Locale.getDefault()).format(citySunset)
+            val readableSunrise = CityData.formatCityHourMinute(sunriseMillsUTC)
+            val readableSunset = CityData.formatCityHourMinute(sunsetMillsUTC)
             cardView.findViewById<TextView>(R.id.sunriseTextView).text = readableSunrise
             cardView.findViewById<TextView>(R.id.sunsetTextView).text = readableSunset
 
             cardView.findViewById<View>(R.id.sunsetSunriseLayout).visibility = View.VISIBLE
         }
 
-        private fun getCityOffsetMillis(): Long {
-            return TimeZone.getTimeZone(CityData.TIME_ZONE_ID).getOffset(currentTimeMillis())
-                .toLong()
-        }
-
-        private fun getDeviceUTCoffset(): Long {
-            return TimeZone.getDefault().getOffset(currentTimeMillis()).toLong()
-        }
-
         fun dpToPx(context: Context, dp: Int): Int {
             val displayMetrics: DisplayMetrics = context.resources.displayMetrics
             return (dp * (displayMetrics.xdpi / DisplayMetrics.DENSITY_DEFAULT)).roundToInt()
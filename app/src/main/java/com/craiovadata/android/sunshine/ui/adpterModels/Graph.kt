@@ -4,115 +4,37 @@ import android.graphics.Color
 import android.view.View
 import android.widget.Toast
 import androidx.core.content.ContextCompat
-import androidx.preference.PreferenceManager.getDefaultSharedPreferences
 import com.craiovadata.android.sunshine.R
 import com.craiovadata.android.sunshine.ui.main.CardsAdapter
-import com.craiovadata.android.sunshine.utilities.SunshineWeatherUtils
+import com.craiovadata.android.sunshine.utilities.DisplaySettings
 import com.craiovadata.android.sunshine.CityData
-import com.craiovadata.android.sunshine.CityData.IS_IMPERIAL_UNITS_DEFAULT
 import com.craiovadata.android.sunshine.CityData.isTestMode
+import com.craiovadata.android.sunshine.ui.models.GraphDisplay
 import com.craiovadata.android.sunshine.ui.models.ListWeatherEntry
-import com.jjoe64.graphview.GridLabelRenderer
-import com.jjoe64.graphview.helper.DateAsXAxisLabelFormatter
-import com.jjoe64.graphview.series.DataPoint
-import com.jjoe64.graphview.series.LineGraphSeries
 import kotlinx.android.synthetic.main.card_graph.view.*
-import java.util.*
 
 //(val weatherId: Int, val date: Date, val temperature: Double, val iconCodeOWM: String)
-data class Graph(val list: List<ListWeatherEntry>?) :
+data class Graph(
+    val list: List<ListWeatherEntry>?,
+    val display: GraphDisplay?,
+    val settings: DisplaySettings
+) :
     Base(
 //        list?.get(0)?.date?.time,
         TYPE.GRAPH) {
 
-    companion object {
-
-        @JvmStatic
-        fun bindForecastToUI(
-            weatherEntries: List<ListWeatherEntry>?,
-            view: View,
-            listener: CardsAdapter.Listener
-        ) {
-            if (weatherEntries == null || weatherEntries.isEmpty()) return
-            drawGraph(
-                weatherEntries,
-                view
-            )
-            setTextCelsiusFarStates(
-                view,
-                listener
-            )
-        }
-
-
-        private fun drawGraph(entries: List<ListWeatherEntry>, view: View) {
-            view.graphView.removeAllSeries()
-
-            val series = LineGraphSeries<DataPoint>()
-//            var minTemp = 125.0
-//            var maxTemp = - 50.0
-            entries.forEach { entry ->
-                val temperature =
-                    SunshineWeatherUtils.adaptTemperature(view.context, entry.temperature)
-
-//               if ( temperature < minTemp) minTemp = temperature
-//               if (temperature > maxTemp) maxTemp =  temperature
-
-                val dataPoint = DataPoint(entry.date, temperature)
-//                series.appendData(dataPoint, false, entries.size)
-                series.appendData(dataPoint, true, entries.size + 2, true)
-            }
-
-            series.apply {
-                color = view.context.getColor(R.color.semitransparentGray)
-//            backgroundColor = Color.TRANSPARENT
-                isDrawBackground = true
-                setAnimated(false)
-                thickness = 3
-                isDrawDataPoints = true
-//                dataPointsRadius = 3.0f
-
-            }
-
-            view.graphView.apply {
-//                removeAllSeries()
-//                onDataChanged(false, false)
-
-                //                title = context.getString(R.string.title_graph_temperature)
-                onDataChanged(false, false)
-
-                // set manual x bounds to have nice steps
-//                viewport.isYAxisBoundsManual = true
-//                viewport.setMinY(minTemp - 3)
-//                viewport.setMaxY(maxTemp + 3)
-
-                addSeries(series)
-                gridLabelRenderer.apply {
-//                    numHorizontalLabels = entries.size
-//                   numVerticalLabels = ((maxTemp - minTemp)/6).toInt() + 3
-//numVerticalLabels = 4
-//                horizontalAxisTitle = "hour"
-//                    verticalAxisTitle = "Temperature"
-//                    horizontalAxisTitle =  "\u23F0"
-//                    horizontalAxisTitle =  "\uE12b"
-
-                    gridStyle = GridLabelRenderer.GridStyle.NONE
-                    setHumanRounding(false, true)
-                    labelFormatter = object :
-                        DateAsXAxisLabelFormatter(
-                            context,
-                            CityData.getFormatterCityTZ("HH:mm")
-                        ) {
-                        override fun formatLabel(value: Double, isValueX: Boolean): String {
-                            return if (isValueX) super.formatLabel(value, isValueX)
-                            else super.formatLabel(value, isValueX) + "\u00B0"
-                        }
-                    }
-                }
+    /**
+     * The graph of a card view, owned by its view holder. A bind only hands the points and labels
+     * formatted by the card reducer to the chart, and not even that if they are the ones already
+     * drawn.
+     */
+    class Chart(private val view: View) {
 
-            }
+        private var drawnDisplay: GraphDisplay? = null
+        private var drawnSettings: DisplaySettings? = null
 
-            val cityTimeZone = TimeZone.getTimeZone(CityData.TIME_ZONE_ID)
+        init {
+            val cityTimeZone = CityData.cityTimeZone
             view.textViewClockSymbol.setOnClickListener {
                 Toast.makeText(it.context, cityTimeZone.displayName, Toast.LENGTH_SHORT).show()
             }
@@ -124,12 +46,37 @@ data class Graph(val list: List<ListWeatherEntry>?) :
             }
         }
 
-        private fun setTextCelsiusFarStates(view: View, listener: CardsAdapter.Listener) {
-            val context = view.context
+        fun bind(display: GraphDisplay?, settings: DisplaySettings, listener: CardsAdapter.Listener) {
+            // The units toggle works with or without data
+            if (settings != drawnSettings) {
+                setTextCelsiusFarStates(view, listener, settings)
+                drawnSettings = settings
+            }
 
-            val sp = getDefaultSharedPreferences(context)
-            val key = context.getString(R.string.pref_units_key)
-            val isImperial = sp.getBoolean(key, IS_IMPERIAL_UNITS_DEFAULT)
+            if (display == null || display.values.isEmpty()) {
+                // Don't leave the points of the card this holder showed before
+                if (drawnDisplay != null) {
+                    view.temperatureChart.setData(FloatArray(0), emptyArray(), emptyArray())
+                    drawnDisplay = null
+                }
+                return
+            }
+            if (display != drawnDisplay) {
+                view.temperatureChart.setData(display.values, display.valueLabels, display.timeLabels)
+                drawnDisplay = display
+            }
+        }
+    }
+
+    companion object {
+
+        private fun setTextCelsiusFarStates(
+            view: View,
+            listener: CardsAdapter.Listener,
+            settings: DisplaySettings
+        ) {
+            val context = view.context
+            val isImperial = settings.isImperial
 
             var blueView = view.textViewFarenheit
             var whiteView = view.textViewCelsius
@@ -141,7 +88,7 @@ data class Graph(val list: List<ListWeatherEntry>?) :
 
             blueView.setTextColor(ContextCompat.getColor(context, android.R.color.holo_blue_dark))
             blueView.setOnClickListener {
-                sp.edit().putBoolean(key, !isImperial).apply()
+                DisplaySettings.setImperial(context, !isImperial)
                 listener.onCelsiusFarClicked(it)
             }
             blueView.isClickable = true
@@ -4,20 +4,20 @@ import android.view.LayoutInflater
 import android.view.View
 import com.craiovadata.android.sunshine.R
 import com.craiovadata.android.sunshine.utilities.SunshineWeatherUtils
-import com.craiovadata.android.sunshine.CityData
+import com.craiovadata.android.sunshine.ui.models.DayDisplay
 import com.craiovadata.android.sunshine.ui.models.ListWeatherEntry
 import kotlinx.android.synthetic.main.card_days.view.*
 import kotlinx.android.synthetic.main.days_weather_item.view.*
 
-data class MultiDay(val list: List<ListWeatherEntry>?): Base(
+data class MultiDay(val list: List<ListWeatherEntry>?, val days: List<DayDisplay>?): Base(
 //    list?.get(0)?.date?.time ,
     TYPE.DAYS) {
 
     companion object {
 
         @JvmStatic
-        fun bindForecastToUI(weatherEntries: List<ListWeatherEntry>?, view: View) {
-            if (weatherEntries == null || weatherEntries.isEmpty()) return
+        fun bindForecastToUI(weatherEntries: List<ListWeatherEntry>?, days: List<DayDisplay>?, view: View) {
+            if (weatherEntries == null || weatherEntries.isEmpty() || days == null) return
 
             val container = view.daysLayout
             if (container.childCount > 0) {
@@ -25,11 +25,12 @@ data class MultiDay(val list: List<ListWeatherEntry>?): Base(
             }
 //        if (adView?.parent != null) (adView.parent as ViewGroup).removeView(adView)
 
-            weatherEntries.forEach { entry ->
+            weatherEntries.forEachIndexed { i, entry ->
                 val dayView = LayoutInflater.from(view.context).inflate(R.layout.days_weather_item, container, false)
                 dayView?.let {
                     bindDayToUI(
                         entry,
+                        days[i],
                         dayView
                     )
                     container.addView(dayView)
@@ -37,51 +38,31 @@ data class MultiDay(val list: List<ListWeatherEntry>?): Base(
             }
         }
 
-        private fun bindDayToUI(entry: ListWeatherEntry, dayView: View) {
+        private fun bindDayToUI(entry: ListWeatherEntry, display: DayDisplay, dayView: View) {
             /****************
              * Weather Icon *
              */
-        val weatherId = entry.weatherId
             //        int weatherImageId = SunshineWeatherUtils.getLargeArtResourceIdForWeatherCondition(weatherId);
-            val iconId = entry.iconCodeOWM
+            val iconId = entry.iconCode
             val weatherImageId = SunshineWeatherUtils.getSmallArtResourceIdForIconCode(iconId)
 
             /* Set the resource ID on the iconCodeOWM to display the art */
             dayView.weatherIcon.setImageResource(weatherImageId)
 
-            val weatherDescription = SunshineWeatherUtils.getStringForWeatherCondition(dayView.context, weatherId)
-            val weatherIconDescription = dayView.context.getString(R.string.a11y_forecast_icon, weatherDescription)
-            dayView.weatherIcon.contentDescription = weatherIconDescription
+            dayView.weatherIcon.contentDescription = display.iconDescription
 
             /****************
              * Weather Date *
              */
-            val pattern = "EEEE"
-//            if (BuildConfig.DEBUG) pattern = "EEE dd MMM HH.mm"
-            val simpleDateFormat = CityData.getFormatterCityTZ(pattern)
-            val time = entry.date.time
-            val dateTxt = simpleDateFormat.format(time )
-            dayView.weatherDate.text = dateTxt
+            dayView.weatherDate.text = display.day
 
             /**************************
              * High (max) temperature *
              */
 
-            val maxInCelsius = entry.temperature
-
-            /*
-             * If the user's preference for weather is fahrenheit, formatTemperature will convert
-             * the temperature. This method will also append either °C or °F to the temperature
-             * String.
-             */
-            val highString = SunshineWeatherUtils.formatTemperature(dayView.context, maxInCelsius)
-
-            /* Create the accessibility (a11y) String from the weather description */
-            val highA11y = dayView.context.getString(R.string.a11y_high_temp, highString)
-
             /* Set the text and content description (for accessibility purposes) */
-            dayView.temperatureText.text = highString
-            dayView.temperatureText.contentDescription = highA11y
+            dayView.temperatureText.text = display.temperature
+            dayView.temperatureText.contentDescription = display.temperatureA11y
         }
 
     }
@@ -117,14 +117,15 @@ open class BaseActivity : AppCompatActivity() {
         if (!isTestMode) return
         if (currentWeatherEntry == null) return
 
-        if (currentWeatherEntry.cityName.isEmpty()) return
-        if (currentWeatherEntry.isCurrentWeather == 0) return  // only currentWeatherEntry contains cityName
+        if (currentWeatherEntry.isCurrentWeather == 0) return  // only currentWeatherEntry comes with cityName
+        val cityName = LogUtils.getSavedCityName(this)
+        if (cityName.isEmpty()) return
 
-        if (currentWeatherEntry.cityName != getString(R.string.app_name)) {  // ok
+        if (cityName != getString(R.string.app_name)) {  // ok
             //  !!! problem - wrong city1 name
             layoutAttention.visibility = View.VISIBLE
             val textToShow =
-                "orasul de la OWM se numeste: ${currentWeatherEntry.cityName} !"
+                "orasul de la OWM se numeste: $cityName !"
             layoutAttention.textViewWarnCityWrong.text = textToShow
 
 //            layoutAttention.buttonWarning.setOnClickListener {
@@ -1,19 +1,24 @@
 package com.craiovadata.android.sunshine.ui.main
 
+import android.annotation.SuppressLint
 import android.content.Context
 import android.view.LayoutInflater
 import android.view.View
 import android.view.ViewGroup
 import androidx.recyclerview.widget.DiffUtil
+import androidx.recyclerview.widget.ListAdapter
 import androidx.recyclerview.widget.RecyclerView
 import com.craiovadata.android.sunshine.R
 import com.craiovadata.android.sunshine.ui.adpterModels.Base
 
+/**
+ * Shows the cards built by [MyViewModel]. New lists go through [submitList] and are diffed on a
+ * background thread by [ListAdapter].
+ */
 class CardsAdapter(
     val context: Context,
-    var listUpdates: List<Base>,
     private val listener: Listener
-) : RecyclerView.Adapter<RecyclerView.ViewHolder>() {
+) : ListAdapter<Base, RecyclerView.ViewHolder>(CardsDiffCallback) {
 
     companion object {
         const val VIEW_TYPE_WEATHER = 0
@@ -26,7 +31,7 @@ class CardsAdapter(
     }
 
     override fun getItemViewType(position: Int): Int {
-        return when (listUpdates[position]._type) {
+        return when (getItem(position)._type) {
             Base.TYPE.WEATHER -> VIEW_TYPE_WEATHER
             Base.TYPE.DETAILS -> VIEW_TYPE_DETAILS
             Base.TYPE.GRAPH -> VIEW_TYPE_GRAPH
@@ -76,10 +81,22 @@ class CardsAdapter(
 
 
     override fun onBindViewHolder(holder: RecyclerView.ViewHolder, position: Int) {
-        (holder as CardsViewHolders.UpdateViewHolder).bindViews(listUpdates[position])
+        (holder as CardsViewHolders.UpdateViewHolder).bindViews(getItem(position))
     }
 
-    override fun getItemCount() = listUpdates.size
+    override fun onBindViewHolder(
+        holder: RecyclerView.ViewHolder,
+        position: Int,
+        payloads: MutableList<Any>
+    ) {
+        if (payloads.isEmpty()) {
+            onBindViewHolder(holder, position)
+            return
+        }
+        // The first payload is the card the holder currently shows
+        (holder as CardsViewHolders.UpdateViewHolder)
+            .bindChanges(getItem(position), payloads.first() as Base)
+    }
 
     interface Listener {
         //        fun onWeatherImageClicked()
@@ -87,53 +104,24 @@ class CardsAdapter(
 //        fun onMapClicked()
     }
 
-    /**
-     * Swaps the list used by the ForecastAdapter for its weather data. This method is called by
-     * [MainActivity] after a load has finished. When this method is called, we assume we have
-     * a new set of data, so we call notifyDataSetChanged to tell the RecyclerView to update.
-     *
-     * @param newUpdates the new list of forecasts to use as ForecastAdapter's data source
+    /*
+     * Cards are the same item when they have the same type, and have the same contents when
+     * their models are equal, so only a card whose data changed is rebound. The previous model
+     * goes along as payload: the holder is rebound in place, without the change animation, and
+     * can skip the parts that didn't change.
      */
-    fun setUpdates(newUpdates: List<Base>) {
-        // If there was no forecast data, then recreate all of the list
-        if (listUpdates.isEmpty()) {
-            listUpdates = newUpdates
-            notifyDataSetChanged()
-
-        } else {
-//+            * Otherwise we use DiffUtil to calculate the changes and update accordingly. This
-//+            * shows the four methods you need to override to return a DiffUtil callback. The
-//+            * old list is the current list stored in listUpdates, where the new list is the new
-//+            * values passed in from the observing the database.
-
-            val result = DiffUtil.calculateDiff(object : DiffUtil.Callback() {
-
-                override fun getNewListSize(): Int {
-                    return newUpdates.size
-                }
-
-                override fun getOldListSize(): Int {
-                    return listUpdates.size
-                }
-
-                override fun areItemsTheSame(oldItemPosition: Int, newItemPosition: Int): Boolean {
-                    return listUpdates[oldItemPosition]._type == newUpdates[newItemPosition]._type
-                }
-
-                override fun areContentsTheSame(
-                    oldItemPosition: Int,
-                    newItemPosition: Int
-                ): Boolean {
-                    val newWeather = newUpdates[newItemPosition]
-                    val oldWeather = listUpdates[oldItemPosition]
-                    return newWeather._type == oldWeather._type
-//                            && newWeather._date == oldWeather._date
-                }
-            })
-            listUpdates = newUpdates
-            result.dispatchUpdatesTo(this)
+    private object CardsDiffCallback : DiffUtil.ItemCallback<Base>() {
+        override fun areItemsTheSame(oldItem: Base, newItem: Base): Boolean {
+            return oldItem._type == newItem._type
         }
 
+        @SuppressLint("DiffUtilEquals") // cards are data classes
+        override fun areContentsTheSame(oldItem: Base, newItem: Base): Boolean {
+            return oldItem == newItem
+        }
 
+        override fun getChangePayload(oldItem: Base, newItem: Base): Any? {
+            return oldItem
+        }
     }
-}
\ No newline at end of file
+}
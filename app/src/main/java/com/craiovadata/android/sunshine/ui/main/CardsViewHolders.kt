@@ -10,14 +10,19 @@ class CardsViewHolders {
 
     interface UpdateViewHolder {
         fun bindViews(update: Base)
+
+        /** Rebinds a holder that showed [previous]. By default everything is bound again. */
+        fun bindChanges(update: Base, previous: Base) = bindViews(update)
     }
 
     class WeatherViewHolder(itemView: View) : RecyclerView.ViewHolder(itemView), UpdateViewHolder {
-        // get the views reference from itemView...
+        private val mill = CurrentWeather.MillAnimation(itemView)
+
         override fun bindViews(update: Base) {
             val currentWeatherUpdate = update as CurrentWeather
             val entry = currentWeatherUpdate.weatherEntry
-            CurrentWeather.bindWeatherToUI(entry, itemView)
+            CurrentWeather.bindWeatherToUI(entry, currentWeatherUpdate.display, itemView)
+            mill.bind(entry)
         }
     }
 
@@ -26,7 +31,7 @@ class CardsViewHolders {
         override fun bindViews(update: Base) {
             val detailsUpdate = update as Details
             val entry = detailsUpdate.weatherEntry
-            Details.bindWeatherToUI(entry, itemView)
+            Details.bindWeatherToUI(entry, detailsUpdate.display, itemView)
 
             // bind update values to views
         }
@@ -34,11 +39,11 @@ class CardsViewHolders {
 
     class GraphViewHolder(itemView: View, private val listener: CardsAdapter.Listener) :
         RecyclerView.ViewHolder(itemView), UpdateViewHolder {
-        // get the views reference from itemView...
+        private val chart = Graph.Chart(itemView)
+
         override fun bindViews(update: Base) {
             val forecastUpdate = update as Graph
-            val list = forecastUpdate.list
-            Graph.bindForecastToUI(list, itemView, listener)
+            chart.bind(forecastUpdate.display, forecastUpdate.settings, listener)
 
             // bind update values to views
         }
@@ -49,7 +54,7 @@ class CardsViewHolders {
         override fun bindViews(update: Base) {
             val multiDayUpdate = update as MultiDay
 
-            MultiDay.bindForecastToUI(multiDayUpdate.list, itemView)
+            MultiDay.bindForecastToUI(multiDayUpdate.list, multiDayUpdate.days, itemView)
 
             // bind update values to views
         }
@@ -63,6 +68,16 @@ class CardsViewHolders {
 //            if (!BuildConfig.DEBUG)
                 Map.bindMapToUI(entry, itemView)
         }
+
+        // The map only depends on the location, not on the weather
+        override fun bindChanges(update: Base, previous: Base) {
+            val entry = (update as Map).weatherEntry
+            val previousEntry = (previous as Map).weatherEntry
+            if (entry != null && previousEntry != null &&
+                entry.lat == previousEntry.lat && entry.lon == previousEntry.lon
+            ) return
+            bindViews(update)
+        }
     }
   class WebcamViewHolder(itemView: View) : RecyclerView.ViewHolder(itemView), UpdateViewHolder {
         override fun bindViews(update: Base) {
@@ -0,0 +1,41 @@
+package com.craiovadata.android.sunshine.ui.main
+
+import com.craiovadata.android.sunshine.utilities.LogUtils.log
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.distinctUntilChanged
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Counts, per UI stream, the query results that were dropped because they were equal to the
+ * previous one, i.e. the table was invalidated by a write that didn't touch those rows.
+ */
+internal object EmissionStats {
+
+    private val emitted = ConcurrentHashMap<String, AtomicLong>()
+    private val suppressed = ConcurrentHashMap<String, AtomicLong>()
+
+    fun onEmitted(tag: String) {
+        emitted.getOrPut(tag) { AtomicLong() }.incrementAndGet()
+    }
+
+    fun onSuppressed(tag: String) {
+        suppressed.getOrPut(tag) { AtomicLong() }.incrementAndGet()
+        log(summary())
+    }
+
+    fun summary(): String = (emitted.keys + suppressed.keys).sorted().joinToString(prefix = "emissions: ") { tag ->
+        "$tag ${emitted[tag]?.get() ?: 0} emitted / ${suppressed[tag]?.get() ?: 0} suppressed"
+    }
+}
+
+/**
+ * [distinctUntilChanged] that reports to [EmissionStats], under [tag], every value after the
+ * first one that it lets through, and every value it drops.
+ */
+internal fun <T> Flow<T>.distinctUntilChangedCounting(tag: String): Flow<T> =
+    distinctUntilChanged { old, new ->
+        val same = old == new
+        if (same) EmissionStats.onSuppressed(tag) else EmissionStats.onEmitted(tag)
+        same
+    }
@@ -13,8 +13,6 @@ import androidx.recyclerview.widget.RecyclerView
 import com.craiovadata.android.sunshine.CityData.isTestMode
 import com.craiovadata.android.sunshine.R
 import com.craiovadata.android.sunshine.ui.adpterModels.*
-import com.craiovadata.android.sunshine.ui.models.*
-import com.craiovadata.android.sunshine.ui.adpterModels.Map
 import com.craiovadata.android.sunshine.ui.policy.PrivacyPolicyActivity
 import com.craiovadata.android.sunshine.ui.settings.SettingsActivity
 import com.craiovadata.android.sunshine.utilities.InjectorUtils
@@ -23,10 +21,7 @@ import kotlinx.android.synthetic.main.content_main.view.*
 
 class MainActivity : BaseActivity(), CardsAdapter.Listener {
 
-    private var currentWeatherEntry: WeatherEntry? = null
-    private var graphWeatherEntries: List<ListWeatherEntry>? = null
-    private var multiDayEntries: List<ListWeatherEntry>? = null
-    private var webcamEntries: List<WebcamEntry>? = null
+    private var cards: List<Base> = listOf()
 
     //    private var listPosition = RecyclerView.NO_POSITION
     private lateinit var mAdapter: CardsAdapter
@@ -39,17 +34,15 @@ class MainActivity : BaseActivity(), CardsAdapter.Listener {
 //            setHasFixedSize(true)
             layoutManager = MyLinearLayoutManager(this@MainActivity)
 
-            mAdapter = CardsAdapter(this@MainActivity, listOf(), this@MainActivity)
+            mAdapter = CardsAdapter(this@MainActivity, this@MainActivity)
             adapter = mAdapter
         }
 
         val factory = InjectorUtils.provideMainActivityViewModelFactory(this.applicationContext)
         myViewModel = ViewModelProvider(this@MainActivity, factory).get(MyViewModel::class.java)
 
-        observeCurrentWeather(myViewModel)
-        observeDayWeather(myViewModel)
-        observeDaysWeather(myViewModel)
-        observeWebcamsData(myViewModel)
+        observeCards(myViewModel)
+        if (isTestMode) observeCurrentWeather(myViewModel)
 
         lifecycle.addObserver(myViewModel)
     }
@@ -73,80 +66,29 @@ class MainActivity : BaseActivity(), CardsAdapter.Listener {
 
     }
 
-    private fun observeCurrentWeather(myViewModel: MyViewModel) {
-        myViewModel.currentWeatherObservable.observe(this,
-            androidx.lifecycle.Observer<List<WeatherEntry>> { listEntries ->
-                if (listEntries.isNullOrEmpty()) {
-                    showLoading()
-                    return@Observer
-                }
-                showRecyclerView()
-                currentWeatherEntry = listEntries[0]
-                updateAdapter()
-                logAndWarnCurrentWeather(listEntries)
-            })
-    }
-
-    private fun observeDayWeather(myViewModel: MyViewModel) {
-        myViewModel.nextHoursWeatherObservable.observe(this, Observer { listEntries ->
-            if (listEntries.isNullOrEmpty()) return@Observer
+    private fun observeCards(myViewModel: MyViewModel) {
+        myViewModel.cards.observe(this, Observer { newCards ->
+            if (newCards.none { it is CurrentWeather }) {
+                showLoading()
+                return@Observer
+            }
             showRecyclerView()
-            graphWeatherEntries = listEntries
-            updateAdapter()
-        })
-    }
-
-    private fun observeDaysWeather(myViewModel: MyViewModel) {
-        myViewModel.midDayWeather.observe(this, androidx.lifecycle.Observer { listEntries ->
-            if (listEntries.isNullOrEmpty()) return@Observer
-            multiDayEntries = listEntries
+            cards = newCards
             updateAdapter()
         })
     }
 
-    private fun observeWebcamsData(myViewModel: MyViewModel) {
-        myViewModel.webcams.observe(this, androidx.lifecycle.Observer { listEntries ->
+    private fun observeCurrentWeather(myViewModel: MyViewModel) {
+        myViewModel.currentWeatherObservable.observe(this, Observer { listEntries ->
             if (listEntries.isNullOrEmpty()) return@Observer
-            webcamEntries = listEntries
-//            listEntries.forEach { webcamEntry ->  LogUtils.log(webcamEntry.title) }
-            updateAdapter()
+            logAndWarnCurrentWeather(listEntries)
         })
     }
 
+    // The cards come ready made from MyViewModel, only the ad is added here
     override fun updateAdapter() {
-        val updates = mutableListOf<Base>()
-//        // Primele 4 sunt notificate de schimbare °C|°F - onCelsiusFarClicked
-
-        currentWeatherEntry?.let {
-            updates.add(CurrentWeather(it))
-        }
-
-        updates.add(Graph(graphWeatherEntries))
-
-        currentWeatherEntry?.let {
-            updates.add(Details(it))
-        }
-
-        updates.add(
-            MultiDay(
-                multiDayEntries
-            )
-        )
-        if (!webcamEntries.isNullOrEmpty()) {
-            updates.add(
-                Webcam(webcamEntries)
-            )
-        }
-        updates.add(
-            Map(
-                currentWeatherEntry
-            )
-        )
-        if (adViewMedRectangle != null) updates.add(
-            updates.size,
-            Ads(adViewMedRectangle)
-        )
-        mAdapter.setUpdates(updates)
+        val ad = adViewMedRectangle
+        mAdapter.submitList(if (ad != null) cards + Ads(ad) else cards)
     }
 
     override fun onCreateOptionsMenu(menu: Menu): Boolean {
@@ -177,8 +119,9 @@ class MainActivity : BaseActivity(), CardsAdapter.Listener {
         }
     }
 
+    // The cards reformatted in the new units are diffed in like any other change
     override fun onCelsiusFarClicked(view: View) {
-        recyclerView.adapter?.notifyItemRangeChanged(0, 4)
+        myViewModel.onDisplaySettingsChanged()
     }
 
     fun onOkTestButtonPressed(view: View) {
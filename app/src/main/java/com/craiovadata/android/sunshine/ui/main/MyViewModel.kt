@@ -1,26 +1,59 @@
 package com.craiovadata.android.sunshine.ui.main
 
+import android.content.Context
 import android.util.Log
 import androidx.lifecycle.*
 import com.craiovadata.android.sunshine.data.database.Repository
+import com.craiovadata.android.sunshine.ui.adpterModels.*
+import com.craiovadata.android.sunshine.ui.adpterModels.Map
+import com.craiovadata.android.sunshine.ui.models.DisplayModels
 import com.craiovadata.android.sunshine.ui.models.ListWeatherEntry
 import com.craiovadata.android.sunshine.ui.models.WeatherEntry
 import androidx.lifecycle.OnLifecycleEvent
 import androidx.lifecycle.LifecycleObserver
 import com.craiovadata.android.sunshine.ui.models.WebcamEntry
+import com.craiovadata.android.sunshine.utilities.DisplaySettings
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.ExperimentalCoroutinesApi
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.MutableStateFlow
+import kotlinx.coroutines.flow.SharingStarted
+import kotlinx.coroutines.flow.combine
+import kotlinx.coroutines.flow.flatMapLatest
+import kotlinx.coroutines.flow.flowOn
+import kotlinx.coroutines.flow.shareIn
+import java.util.*
 
-class MyViewModel internal constructor(private val repository: Repository) : ViewModel(),
+/*
+ * Room re-runs a query on every write to its tables. Results equal to the previous one are
+ * dropped here, off the main thread, so they never reach the adapter.
+ */
+@OptIn(ExperimentalCoroutinesApi::class)
+class MyViewModel internal constructor(
+    private val repository: Repository,
+    private val context: Context
+) : ViewModel(),
     LifecycleObserver {
-    //    val nextHoursWeather: LiveData<List<ListWeatherEntry>> = repository.nextHoursWeather
-    val midDayWeather: LiveData<List<ListWeatherEntry>> = repository.dayWeatherEntries
-    val webcams: LiveData<List<WebcamEntry>> = repository.webcamsEntries
-
 
     // are rol la afisare
     @OnLifecycleEvent(Lifecycle.Event.ON_RESUME)
     internal fun onStartEvent() {
         Log.i("MainVieModel", "Observer ON_RESUME")
         searchCurrentWeatherByTimestamp(System.currentTimeMillis()+ 3000)
+        // The units or the locale may have changed while the activity was in the background
+        onDisplaySettingsChanged()
+    }
+
+    /* What the card strings are formatted for. Equal values don't rebuild the cards */
+    private data class DisplayConfig(val settings: DisplaySettings, val locale: Locale)
+
+    private val displayConfig = MutableStateFlow(currentDisplayConfig())
+
+    private fun currentDisplayConfig() = DisplayConfig(DisplaySettings.get(context), Locale.getDefault())
+
+    /** Rebuilds the cards if the units or the locale changed. */
+    fun onDisplaySettingsChanged() {
+        displayConfig.value = currentDisplayConfig()
     }
 
     private val mutableTimestamp: MutableLiveData<Long> = MutableLiveData()
@@ -29,19 +62,74 @@ class MyViewModel internal constructor(private val repository: Repository) : Vie
         mutableTimestamp.value = timestamp
     }
 
-    val currentWeatherObservable: LiveData<List<WeatherEntry>> =
-        Transformations.switchMap(mutableTimestamp) { timestamp ->
+    // Collected by the cards and by currentWeatherObservable, through one Room subscription
+    private val currentWeather: Flow<List<WeatherEntry>> =
+        mutableTimestamp.asFlow().flatMapLatest { timestamp ->
             repository.getCurrentWeather(timestamp)
-        }
+        }.distinctUntilChangedCounting("currentWeather")
+            .flowOn(Dispatchers.Default)
+            .shareIn(viewModelScope, SharingStarted.WhileSubscribed(STOP_TIMEOUT_MILLIS), 1)
 
-    val nextHoursWeatherObservable: LiveData<List<ListWeatherEntry>> =
-        Transformations.switchMap(mutableTimestamp) { timestamp ->
+    private val nextHoursWeather: Flow<List<ListWeatherEntry>> =
+        mutableTimestamp.asFlow().flatMapLatest { timestamp ->
             repository.getWeatherNextHours(timestamp)
-        }
+        }.distinctUntilChangedCounting("nextHoursWeather")
 
+    private val midDayWeather: Flow<List<ListWeatherEntry>> =
+        repository.dayWeatherEntries.distinctUntilChangedCounting("midDayWeather")
 
+    private val webcams: Flow<List<WebcamEntry>> =
+        repository.webcamsEntries.distinctUntilChangedCounting("webcams")
 
+    /** Raw current weather rows, for the test mode logs and warnings. */
+    val currentWeatherObservable: LiveData<List<WeatherEntry>> = currentWeather.asLiveData()
 
-}
+    // Only touched by the reducer, which runs one combination at a time
+    private var lastCards: List<Base> = emptyList()
 
+    /**
+     * The weather cards, ads excluded, rebuilt off the main thread from the latest result of
+     * every stream. Nothing is published until every stream has produced a first result, and
+     * afterwards only when a card actually changed.
+     */
+    val cards: LiveData<List<Base>> =
+        combine(
+            currentWeather, nextHoursWeather, midDayWeather, webcams, displayConfig
+        ) { current, nextHours, midDay, webcams, config ->
+            reduceCards(current, nextHours, midDay, webcams, config.settings)
+        }.distinctUntilChangedCounting("cards")
+            .flowOn(Dispatchers.Default)
+            .asLiveData()
 
+    private fun reduceCards(
+        current: List<WeatherEntry>,
+        nextHours: List<ListWeatherEntry>,
+        midDay: List<ListWeatherEntry>,
+        webcamEntries: List<WebcamEntry>,
+        settings: DisplaySettings
+    ): List<Base> {
+        val currentWeatherEntry = current.firstOrNull()
+        // Formatted here, off the main thread, so the binds only assign strings
+        val display = currentWeatherEntry?.let { DisplayModels.forWeather(context, it, settings) }
+        val days = midDay.takeIf { it.isNotEmpty() }
+        val hours = nextHours.takeIf { it.isNotEmpty() }
+        val cards = ArrayList<Base>(6)
+
+        if (currentWeatherEntry != null && display != null) cards.add(CurrentWeather(currentWeatherEntry, display))
+        cards.add(Graph(hours, hours?.let { DisplayModels.forGraph(context, it, settings) }, settings))
+        if (currentWeatherEntry != null && display != null) cards.add(Details(currentWeatherEntry, display))
+        cards.add(MultiDay(days, days?.map { DisplayModels.forDay(context, it, settings) }))
+        if (webcamEntries.isNotEmpty()) cards.add(Webcam(webcamEntries))
+        cards.add(Map(currentWeatherEntry))
+
+        // Hand back the previous instance of every card that didn't change
+        val reduced = cards.map { card -> lastCards.firstOrNull { it == card } ?: card }
+        lastCards = reduced
+        return reduced
+    }
+
+    private companion object {
+        // Keeps the subscription across a configuration change
+        const val STOP_TIMEOUT_MILLIS = 5_000L
+    }
+}
@@ -0,0 +1,138 @@
+package com.craiovadata.android.sunshine.ui.main
+
+import android.content.Context
+import android.graphics.Canvas
+import android.graphics.Color
+import android.graphics.Paint
+import android.graphics.Path
+import android.util.AttributeSet
+import android.util.TypedValue
+import android.view.View
+import androidx.annotation.VisibleForTesting
+import com.craiovadata.android.sunshine.R
+
+/**
+ * Line chart of the next hours temperatures, a label with the temperature above every point and
+ * the hour below it. The points, paths and label positions are computed when the data or the
+ * size change, [onDraw] only draws them.
+ */
+class TemperatureChartView @JvmOverloads constructor(
+    context: Context,
+    attrs: AttributeSet? = null,
+    defStyleAttr: Int = 0
+) : View(context, attrs, defStyleAttr) {
+
+    private val linePaint = Paint(Paint.ANTI_ALIAS_FLAG).apply {
+        style = Paint.Style.STROKE
+        strokeWidth = dp(3f)
+        strokeJoin = Paint.Join.ROUND
+        color = context.getColor(R.color.semitransparentGray)
+    }
+    private val fillPaint = Paint(Paint.ANTI_ALIAS_FLAG).apply {
+        style = Paint.Style.FILL
+        color = context.getColor(R.color.semitransparentGray)
+        alpha = 0x30
+    }
+    private val pointPaint = Paint(Paint.ANTI_ALIAS_FLAG).apply {
+        style = Paint.Style.FILL
+        color = context.getColor(R.color.semitransparentGray)
+    }
+    private val labelPaint = Paint(Paint.ANTI_ALIAS_FLAG).apply {
+        color = Color.WHITE
+        textAlign = Paint.Align.CENTER
+        textSize = TypedValue.applyDimension(
+            TypedValue.COMPLEX_UNIT_SP, 12f, resources.displayMetrics
+        )
+    }
+
+    private val pointRadius = dp(4f)
+    private val labelGap = dp(6f)
+
+    private var values = FloatArray(0)
+    private var valueLabels: Array<String> = emptyArray()
+    private var timeLabels: Array<String> = emptyArray()
+
+    /** Number of [setData] calls, so tests can tell a rebind that skipped the chart. */
+    @VisibleForTesting
+    internal var setDataCount = 0
+        private set
+
+    // Laid out by computeLayout()
+    private val linePath = Path()
+    private val fillPath = Path()
+    private var pointX = FloatArray(0)
+    private var pointY = FloatArray(0)
+    private var timeLabelY = 0f
+
+    /**
+     * @param values      temperatures, already in the units to show
+     * @param valueLabels formatted temperatures, one per value
+     * @param timeLabels  formatted hours, one per value
+     */
+    fun setData(values: FloatArray, valueLabels: Array<String>, timeLabels: Array<String>) {
+        this.values = values
+        this.valueLabels = valueLabels
+        this.timeLabels = timeLabels
+        setDataCount++
+        if (pointX.size != values.size) {
+            pointX = FloatArray(values.size)
+            pointY = FloatArray(values.size)
+        }
+        computeLayout()
+        invalidate()
+    }
+
+    override fun onSizeChanged(w: Int, h: Int, oldw: Int, oldh: Int) {
+        super.onSizeChanged(w, h, oldw, oldh)
+        computeLayout()
+    }
+
+    private fun computeLayout() {
+        linePath.rewind()
+        fillPath.rewind()
+        val count = values.size
+        if (count == 0 || width == 0 || height == 0) return
+
+        val textHeight = labelPaint.fontSpacing
+        val left = paddingLeft + textHeight
+        val right = width - paddingRight - textHeight
+        // Room for the temperature above the top point and the hour below the bottom
+        val top = paddingTop + textHeight + labelGap + pointRadius
+        val bottom = height - paddingBottom - textHeight - labelGap - pointRadius
+        timeLabelY = height - paddingBottom - labelPaint.descent()
+
+        var min = values[0]
+        var max = values[0]
+        values.forEach {
+            if (it < min) min = it
+            if (it > max) max = it
+        }
+        val range = if (max > min) max - min else 1f
+        val stepX = if (count > 1) (right - left) / (count - 1) else 0f
+
+        for (i in 0 until count) {
+            pointX[i] = if (count > 1) left + i * stepX else (left + right) / 2
+            pointY[i] = bottom - (values[i] - min) / range * (bottom - top)
+            if (i == 0) linePath.moveTo(pointX[i], pointY[i]) else linePath.lineTo(pointX[i], pointY[i])
+        }
+        fillPath.set(linePath)
+        fillPath.lineTo(pointX[count - 1], bottom + pointRadius)
+        fillPath.lineTo(pointX[0], bottom + pointRadius)
+        fillPath.close()
+    }
+
+    override fun onDraw(canvas: Canvas) {
+        super.onDraw(canvas)
+        if (values.isEmpty()) return
+        canvas.drawPath(fillPath, fillPaint)
+        canvas.drawPath(linePath, linePaint)
+        for (i in values.indices) {
+            canvas.drawCircle(pointX[i], pointY[i], pointRadius, pointPaint)
+            canvas.drawText(valueLabels[i], pointX[i], pointY[i] - pointRadius - labelGap, labelPaint)
+            canvas.drawText(timeLabels[i], pointX[i], timeLabelY, labelPaint)
+        }
+    }
+
+    private fun dp(value: Float) =
+        TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP, value, resources.displayMetrics)
+}
@@ -1,14 +1,15 @@
 package com.craiovadata.android.sunshine.ui.main
 
+import android.content.Context
 import androidx.lifecycle.ViewModel
 import androidx.lifecycle.ViewModelProvider.NewInstanceFactory
 import com.craiovadata.android.sunshine.data.database.Repository
 
 class
-ViewModelFactory(private val mRepository: Repository) :
+ViewModelFactory(private val mRepository: Repository, private val mContext: Context) :
     NewInstanceFactory() {
     override fun <T : ViewModel?> create(modelClass: Class<T>): T {
-        return MyViewModel(mRepository) as T
+        return MyViewModel(mRepository, mContext) as T
     }
 
 }
\ No newline at end of file
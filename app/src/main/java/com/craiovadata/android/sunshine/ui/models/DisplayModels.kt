@@ -0,0 +1,164 @@
+package com.craiovadata.android.sunshine.ui.models
+
+import android.content.Context
+import android.util.LruCache
+import com.craiovadata.android.sunshine.CityData
+import com.craiovadata.android.sunshine.R
+import com.craiovadata.android.sunshine.utilities.DisplaySettings
+import com.craiovadata.android.sunshine.utilities.SunshineWeatherUtils
+import com.craiovadata.android.sunshine.utilities.SunshineWeatherUtils.NO_DEGREE_WIND
+import java.util.*
+
+/** The strings shown for a [WeatherEntry], text and accessibility description. */
+data class WeatherDisplay(
+    val description: String,
+    val descriptionA11y: String,
+    val iconDescription: String,
+    val temperature: String,
+    val temperatureA11y: String,
+    val windSpeed: String,
+    val windSpeedA11y: String,
+    val wind: String,
+    val windA11y: String,
+    val humidity: String,
+    val humidityA11y: String,
+    val pressure: String,
+    val pressureA11y: String
+)
+
+/** The strings shown for a day of the [ListWeatherEntry] forecast. */
+data class DayDisplay(
+    val day: String,
+    val iconDescription: String,
+    val temperature: String,
+    val temperatureA11y: String
+)
+
+/**
+ * What the next hours chart draws: the temperatures in the units to show, with their labels and
+ * the hour of each point.
+ */
+class GraphDisplay(
+    val values: FloatArray,
+    val valueLabels: Array<String>,
+    val timeLabels: Array<String>
+) {
+    override fun equals(other: Any?): Boolean = other is GraphDisplay &&
+            values.contentEquals(other.values) &&
+            valueLabels.contentEquals(other.valueLabels) &&
+            timeLabels.contentEquals(other.timeLabels)
+
+    override fun hashCode(): Int =
+        (values.contentHashCode() * 31 + valueLabels.contentHashCode()) * 31 + timeLabels.contentHashCode()
+}
+
+/**
+ * Formats the display strings of an entry once for given units and locale, and keeps the most
+ * recently used ones, so binding a card only assigns strings. Meant to be called off the main
+ * thread, by the card reducer.
+ */
+object DisplayModels {
+
+    private const val MAX_ENTRIES = 64
+    private const val MAX_GRAPHS = 4
+
+    /*
+     * The keys copy the fields that get formatted, so they can't change under the cache the way
+     * a WeatherEntry, a mutable Room entity, could.
+     */
+    private data class WeatherKey(
+        val date: Long,
+        val weatherId: Int,
+        val temperature: Double,
+        val wind: Double,
+        val degrees: Double,
+        val humidity: Double,
+        val pressure: Double,
+        val isImperial: Boolean,
+        val locale: Locale
+    )
+
+    private data class DayKey(
+        val date: Long,
+        val weatherId: Int,
+        val temperature: Double,
+        val isImperial: Boolean,
+        val locale: Locale
+    )
+
+    // ListWeatherEntry only has vals, the list of them is copied
+    private data class GraphKey(
+        val entries: List<ListWeatherEntry>,
+        val isImperial: Boolean,
+        val locale: Locale
+    )
+
+    private val weatherCache = LruCache<WeatherKey, WeatherDisplay>(MAX_ENTRIES)
+    private val dayCache = LruCache<DayKey, DayDisplay>(MAX_ENTRIES)
+    private val graphCache = LruCache<GraphKey, GraphDisplay>(MAX_GRAPHS)
+
+    fun forWeather(context: Context, entry: WeatherEntry, settings: DisplaySettings): WeatherDisplay {
+        val key = WeatherKey(
+            entry.date, entry.weatherId, entry.temperature, entry.wind, entry.degrees,
+            entry.humidity, entry.pressure, settings.isImperial, Locale.getDefault()
+        )
+        weatherCache.get(key)?.let { return it }
+
+        val description = SunshineWeatherUtils.getStringForWeatherCondition(context, entry.weatherId)
+        val temperature = SunshineWeatherUtils.formatTemperature(context, entry.temperature, settings)
+        val windSpeed = SunshineWeatherUtils.getFormattedWind(context, entry.wind, NO_DEGREE_WIND, settings)
+        val wind = SunshineWeatherUtils.getFormattedWind(context, entry.wind, entry.degrees, settings)
+        val humidity = context.getString(R.string.format_humidity, entry.humidity)
+        val pressure = context.getString(R.string.format_pressure, entry.pressure)
+        val display = WeatherDisplay(
+            description = description,
+            descriptionA11y = context.getString(R.string.a11y_forecast, description),
+            iconDescription = context.getString(R.string.a11y_forecast_icon, description),
+            temperature = temperature,
+            temperatureA11y = context.getString(R.string.a11y_high_temp, temperature),
+            windSpeed = windSpeed,
+            windSpeedA11y = context.getString(R.string.a11y_wind, windSpeed),
+            wind = wind,
+            windA11y = context.getString(R.string.a11y_wind, wind),
+            humidity = humidity,
+            humidityA11y = context.getString(R.string.a11y_humidity, humidity),
+            pressure = pressure,
+            pressureA11y = context.getString(R.string.a11y_pressure, pressure)
+        )
+        weatherCache.put(key, display)
+        return display
+    }
+
+    fun forDay(context: Context, entry: ListWeatherEntry, settings: DisplaySettings): DayDisplay {
+        val key = DayKey(entry.date, entry.weatherId, entry.temperature, settings.isImperial, Locale.getDefault())
+        dayCache.get(key)?.let { return it }
+
+        val description = SunshineWeatherUtils.getStringForWeatherCondition(context, entry.weatherId)
+        val temperature = SunshineWeatherUtils.formatTemperature(context, entry.temperature, settings)
+        val display = DayDisplay(
+            day = CityData.formatCityTime("EEEE", entry.date),
+            iconDescription = context.getString(R.string.a11y_forecast_icon, description),
+            temperature = temperature,
+            temperatureA11y = context.getString(R.string.a11y_high_temp, temperature)
+        )
+        dayCache.put(key, display)
+        return display
+    }
+
+    fun forGraph(context: Context, entries: List<ListWeatherEntry>, settings: DisplaySettings): GraphDisplay {
+        val key = GraphKey(entries.toList(), settings.isImperial, Locale.getDefault())
+        graphCache.get(key)?.let { return it }
+
+        val display = GraphDisplay(
+            values = FloatArray(entries.size) { i ->
+                SunshineWeatherUtils.adaptTemperature(entries[i].temperature, settings).toFloat()
+            },
+            valueLabels = Array(entries.size) { i ->
+                SunshineWeatherUtils.formatTemperature(context, entries[i].temperature, settings)
+            },
+            timeLabels = Array(entries.size) { i -> CityData.formatCityTime("HH:mm", entries[i].date) }
+        )
+        graphCache.put(key, display)
+        return display
+    }
+}
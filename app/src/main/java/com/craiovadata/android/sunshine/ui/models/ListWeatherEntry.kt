@@ -1,6 +1,4 @@
 package com.craiovadata.android.sunshine.ui.models
 
-import java.util.*
-
-//class ListWeatherEntry(val id: Int, val weatherId: Int, val date: Date, val temperature: Double, val iconCodeOWM: String)
-class ListWeatherEntry( val weatherId: Int, val date: Date, val temperature: Double, val iconCodeOWM: String)
+//class ListWeatherEntry(val id: Int, val weatherId: Int, val date: Date, val temperature: Double, val iconCode: Int)
+data class ListWeatherEntry( val weatherId: Int, val date: Long, val temperature: Double, val iconCode: Int)
@@ -4,13 +4,21 @@ import androidx.room.Entity
 import androidx.room.Ignore
 import androidx.room.Index
 import androidx.room.PrimaryKey
-import java.util.*
+import com.craiovadata.android.sunshine.CityData
+import com.craiovadata.android.sunshine.utilities.SunshineWeatherUtils
 
-@Entity(tableName = "weather", indices = [Index(value = ["date"], unique = true)])
+@Entity(
+    tableName = "weather",
+    indices = [
+        Index(value = ["date"], unique = true),
+        Index(value = ["localHour", "localDay"]),
+        Index(value = ["isCurrentWeather", "date"])
+    ]
+)
 class WeatherEntry {
 
 //    @PrimaryKey(autoGenerate = true)
-    @PrimaryKey var date: Date = Date()
+    @PrimaryKey var date: Long = 0 // epoch millis
 //    var id: Int = 0
     var weatherId: Int = 0
 
@@ -21,33 +29,38 @@ class WeatherEntry {
     var degrees: Double = 0.toDouble()
     var lat: Double = 0.toDouble()
     var lon: Double = 0.toDouble()
-    var iconCodeOWM: String = "01d"
+    // Index of the OWM icon ("01d", "10n", ...), see SunshineWeatherUtils.getIconCode
+    var iconCode: Int = SunshineWeatherUtils.ICON_CLEAR_DAY
     var isCurrentWeather: Int = NON_CURRENT_WEATHER
-    var cityName: String = ""
-    var description: String = ""
+    // Only filled in by the parser, for debug. Not stored
+    @Ignore var cityName: String = ""
+    @Ignore var description: String = ""
     var sunrise: Long = 0
     var sunset: Long = 0
     var dt: Long = 0
+    // Hour of day and epoch day in the city's time zone. Set by updateLocalTime() before insert
+    var localHour: Int = 0
+    var localDay: Long = 0
 
     /**
      * This constructor is used by OpenWeatherJsonParser. When the network fetch has JSON data, it
      * converts this data to WeatherEntry objects using this constructor.
      *
      * @param weatherId Image _id for weather
-     * @param date          Date of weather
+     * @param date          Time of weather, in epoch millis
      * @param temperature          Max temperature
      * @param humidity      Humidity for the day
      * @param pressure      Barometric pressure
      * @param wind          Wind speed
      * @param degrees       Wind direction
-     * @param iconCodeOWM          Icon code OWM
+     * @param iconCode      Icon code, see SunshineWeatherUtils.getIconCode
      */
 
     // - for DEBUG - constructor for currentWeather. Has isCurrentWeather = 1 and cityName - for debug
     @Ignore
     constructor(
-            weatherId: Int, date: Date, temperature: Double, humidity: Double, pressure: Double,
-            wind: Double, degrees: Double, iconCodeOWM: String, isCurrentWeather: Int, cityName: String, lat: Double, lon: Double,
+            weatherId: Int, date: Long, temperature: Double, humidity: Double, pressure: Double,
+            wind: Double, degrees: Double, iconCode: Int, isCurrentWeather: Int, cityName: String, lat: Double, lon: Double,
             sunrise: Long, sunset: Long, dt: Long) {
         this.weatherId = weatherId
         this.date = date
@@ -56,7 +69,7 @@ class WeatherEntry {
         this.pressure = pressure
         this.wind = wind
         this.degrees = degrees
-        this.iconCodeOWM = iconCodeOWM
+        this.iconCode = iconCode
         this.isCurrentWeather = isCurrentWeather
         this.cityName = cityName
         this.lat = lat
@@ -70,8 +83,8 @@ class WeatherEntry {
  // constructor for currentWeather. Has isCurrentWeather = 1
     @Ignore
     constructor(
-            weatherId: Int, date: Date, temperature: Double, humidity: Double, pressure: Double,
-            wind: Double, degrees: Double, iconCodeOWM: String, isCurrentWeather: Int, lat: Double, lon: Double,
+            weatherId: Int, date: Long, temperature: Double, humidity: Double, pressure: Double,
+            wind: Double, degrees: Double, iconCode: Int, isCurrentWeather: Int, lat: Double, lon: Double,
             sunrise: Long, sunset: Long, dt: Long) {
         this.weatherId = weatherId
         this.date = date
@@ -80,7 +93,7 @@ class WeatherEntry {
         this.pressure = pressure
         this.wind = wind
         this.degrees = degrees
-        this.iconCodeOWM = iconCodeOWM
+        this.iconCode = iconCode
         this.isCurrentWeather = isCurrentWeather
         this.lat = lat
         this.lon = lon
@@ -92,8 +105,8 @@ class WeatherEntry {
 // constructor for forecast 5days 3 hours - isCurrentWeather missing but defaults to 0
     @Ignore
     constructor(
-            weatherId: Int, date: Date, temperature: Double, humidity: Double, pressure: Double,
-            wind: Double, degrees: Double, iconCodeOWM: String, lat: Double, lon: Double) {
+            weatherId: Int, date: Long, temperature: Double, humidity: Double, pressure: Double,
+            wind: Double, degrees: Double, iconCode: Int, lat: Double, lon: Double) {
         this.weatherId = weatherId
         this.date = date
         this.temperature = temperature
@@ -101,7 +114,7 @@ class WeatherEntry {
         this.pressure = pressure
         this.wind = wind
         this.degrees = degrees
-        this.iconCodeOWM = iconCodeOWM
+        this.iconCode = iconCode
         this.lat = lat
         this.lon = lon
     }
@@ -109,8 +122,8 @@ class WeatherEntry {
     // main constructor. Complet
     constructor(
 //        id: Int,
-                weatherId: Int, date: Date, temperature: Double, humidity: Double, pressure: Double,
-                wind: Double, degrees: Double, iconCodeOWM: String, isCurrentWeather: Int, cityName: String) {
+                weatherId: Int, date: Long, temperature: Double, humidity: Double, pressure: Double,
+                wind: Double, degrees: Double, iconCode: Int, isCurrentWeather: Int) {
 //        this.id = id
         this.weatherId = weatherId
         this.date = date
@@ -119,9 +132,8 @@ class WeatherEntry {
         this.pressure = pressure
         this.wind = wind
         this.degrees = degrees
-        this.iconCodeOWM = iconCodeOWM
+        this.iconCode = iconCode
         this.isCurrentWeather = isCurrentWeather
-        this.cityName = cityName
     }
 
     @Ignore
@@ -134,6 +146,43 @@ class WeatherEntry {
         this.weatherId = weatherId
     }
 
+    fun updateLocalTime() {
+        val cityDateTime = CityData.getCityDateTime(date)
+        localHour = cityDateTime.hour
+        localDay = cityDateTime.toLocalDate().toEpochDay()
+    }
+
+    /* Compares the stored columns only, so a re-query returning the same rows compares equal */
+    override fun equals(other: Any?): Boolean {
+        if (this === other) return true
+        if (other !is WeatherEntry) return false
+        return date == other.date &&
+                weatherId == other.weatherId &&
+                temperature == other.temperature &&
+                humidity == other.humidity &&
+                pressure == other.pressure &&
+                wind == other.wind &&
+                degrees == other.degrees &&
+                lat == other.lat &&
+                lon == other.lon &&
+                iconCode == other.iconCode &&
+                isCurrentWeather == other.isCurrentWeather &&
+                sunrise == other.sunrise &&
+                sunset == other.sunset &&
+                dt == other.dt &&
+                localHour == other.localHour &&
+                localDay == other.localDay
+    }
+
+    override fun hashCode(): Int {
+        var result = date.hashCode()
+        result = 31 * result + weatherId
+        result = 31 * result + temperature.hashCode()
+        result = 31 * result + iconCode
+        result = 31 * result + isCurrentWeather
+        return result
+    }
+
     companion object{
         const val CURRENT_WEATHER = 1
         const val NON_CURRENT_WEATHER = 0
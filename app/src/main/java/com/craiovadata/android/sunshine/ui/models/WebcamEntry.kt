@@ -3,13 +3,12 @@ package com.craiovadata.android.sunshine.ui.models
 import androidx.room.Entity
 import androidx.room.Index
 import androidx.room.PrimaryKey
-import java.util.*
 
 @Entity(tableName = "webcams", indices = [Index(value = ["id"], unique = true)])
-class WebcamEntry(
+data class WebcamEntry(
     @PrimaryKey var id: String,
     var title: String,
-    var updateDate: Date,
+    var updateDate: Long, // epoch millis
     var previewUrl: String
 ) {
 
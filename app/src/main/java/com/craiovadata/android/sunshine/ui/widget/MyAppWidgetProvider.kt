@@ -8,9 +8,11 @@ import android.content.Intent
 import android.widget.RemoteViews
 import com.craiovadata.android.sunshine.utilities.AppExecutors
 import com.craiovadata.android.sunshine.R
+import com.craiovadata.android.sunshine.ui.models.DisplayModels
 import com.craiovadata.android.sunshine.ui.models.WeatherEntry
 import com.craiovadata.android.sunshine.ui.main.MainActivity
 import com.craiovadata.android.sunshine.utilities.InjectorUtils.provideRepository
+import com.craiovadata.android.sunshine.utilities.DisplaySettings
 import com.craiovadata.android.sunshine.utilities.SunshineWeatherUtils
 
 class MyAppWidgetProvider : AppWidgetProvider() {
@@ -18,7 +20,7 @@ class MyAppWidgetProvider : AppWidgetProvider() {
     override fun onUpdate(context: Context, appWidgetManager: AppWidgetManager, appWidgetIds: IntArray) {
 
         val repository = provideRepository(context)
-        AppExecutors.instance.diskIO().execute {
+        AppExecutors.instance.diskRead().execute {
 
             val currentWeather = repository.currentWeatherList
 
@@ -36,6 +38,9 @@ class MyAppWidgetProvider : AppWidgetProvider() {
 
     private fun updateWidgets(context: Context, appWidgetManager: AppWidgetManager, appWidgetIds: IntArray, currentWeather: WeatherEntry) {
 
+        // Same strings for every widget, and for the cards showing the same entry
+        val display = DisplayModels.forWeather(context, currentWeather, DisplaySettings.get(context))
+
         // Perform this loop procedure for each App Widget that belongs to this provider
         for (appWidgetId in appWidgetIds) {
             // Create an Intent to launch ExampleActivity
@@ -50,16 +55,13 @@ class MyAppWidgetProvider : AppWidgetProvider() {
             /****************
              * Weather Icon *
              */
-            val weatherId = currentWeather.weatherId
             //        int weatherImageId = SunshineWeatherUtils.getLargeArtResourceIdForWeatherCondition(weatherId);
-                  val weatherDescription = SunshineWeatherUtils.getStringForWeatherCondition(context, weatherId)
-            val iconId = currentWeather.iconCodeOWM
+            val iconId = currentWeather.iconCode
 //            val iconId = "01n"
             val weatherImageId = SunshineWeatherUtils.getLargeArtResourceIdForIconCode(iconId)
-            val weatherIconDescription = context.getString(R.string.a11y_forecast_icon, weatherDescription)
             /* Set the resource ID on the iconCodeOWM to display the art */
             views.setImageViewResource(R.id.widget_icon_weather, weatherImageId)
-            views.setContentDescription(R.id.widget_icon_weather, weatherIconDescription)
+            views.setContentDescription(R.id.widget_icon_weather, display.iconDescription)
 
 
 
@@ -68,11 +70,8 @@ class MyAppWidgetProvider : AppWidgetProvider() {
              * High (max) temperature *
              */
 
-            val tempTxt = SunshineWeatherUtils.formatTemperature(context, currentWeather.temperature)
-             val tempDescr = context.getString(R.string.a11y_high_temp, tempTxt)
-
-            views.setContentDescription(R.id.widgetTextViewTemperature, tempDescr)
-            views.setTextViewText(R.id.widgetTextViewTemperature, tempTxt)
+            views.setContentDescription(R.id.widgetTextViewTemperature, display.temperatureA11y)
+            views.setTextViewText(R.id.widgetTextViewTemperature, display.temperature)
 
 
             // Tell the AppWidgetManager to perform an update on the current app widget
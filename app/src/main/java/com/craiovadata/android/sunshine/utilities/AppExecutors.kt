@@ -2,6 +2,8 @@ package com.craiovadata.android.sunshine.utilities
 
 import android.os.Handler
 import android.os.Looper
+import android.os.SystemClock
+import com.craiovadata.android.sunshine.data.database.DbStats
 
 import java.util.concurrent.Executor
 import java.util.concurrent.Executors
@@ -14,9 +16,14 @@ import java.util.concurrent.Executors
  *
  * Grouping tasks like this avoids the effects of task starvation (e.g. disk reads don't wait behind
  * webservice requests).
+ *
+ * Database work is split in two: [diskIO] is a single thread that does every write, [diskRead]
+ * is a small pool Room runs its queries on. With the database in WAL mode readers don't block on
+ * the writer, so the queries observed by the UI never wait behind a sync.
  */
 class AppExecutors private constructor(
     private val diskIO: Executor,
+    private val diskRead: Executor,
     private val networkIO: Executor,
     private val mainThread: Executor
 ) {
@@ -25,11 +32,15 @@ class AppExecutors private constructor(
         return diskIO
     }
 
+    fun diskRead(): Executor {
+        return diskRead
+    }
+
     fun networkIO(): Executor {
         return networkIO
     }
 
-fun mainThread(): Executor {
+    fun mainThread(): Executor {
         return mainThread
     }
 
@@ -41,8 +52,32 @@ fun mainThread(): Executor {
         }
     }
 
+    /**
+     * Reports to [DbStats], under [tag], how long each task waited in the queue and how long it
+     * ran.
+     */
+    private class TimedExecutor(private val tag: String, private val delegate: Executor) : Executor {
+        override fun execute(command: Runnable) {
+            val submittedAt = SystemClock.elapsedRealtime()
+            delegate.execute {
+                val startedAt = SystemClock.elapsedRealtime()
+                val waitMs = startedAt - submittedAt
+                DbStats.onTaskStarted(waitMs)
+                try {
+                    command.run()
+                } finally {
+                    DbStats.onTaskFinished()
+                    DbStats.record(tag, waitMs, SystemClock.elapsedRealtime() - startedAt)
+                }
+            }
+        }
+    }
+
     companion object {
 
+        /* One less than the WAL connection pool of the framework (4), which keeps one for the writer */
+        private const val DISK_READ_THREADS = 3
+
         // For Singleton instantiation
         private val LOCK = Any()
         private var sInstance: AppExecutors? = null
@@ -53,7 +88,8 @@ fun mainThread(): Executor {
                     synchronized(LOCK) {
                         sInstance =
                             AppExecutors(
-                                Executors.newSingleThreadExecutor(),
+                                TimedExecutor("diskIO", Executors.newSingleThreadExecutor()),
+                                TimedExecutor("diskRead", Executors.newFixedThreadPool(DISK_READ_THREADS)),
                                 Executors.newFixedThreadPool(2),
                                 MainThreadExecutor()
                             )
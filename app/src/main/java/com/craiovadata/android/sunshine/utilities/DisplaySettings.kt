@@ -0,0 +1,55 @@
+package com.craiovadata.android.sunshine.utilities
+
+import android.content.Context
+import android.content.SharedPreferences
+import androidx.preference.PreferenceManager
+import com.craiovadata.android.sunshine.CityData
+import com.craiovadata.android.sunshine.R
+
+/**
+ * Snapshot of the preferences that affect how weather is displayed, handed to the formatters in
+ * [SunshineWeatherUtils]. Preferences are read once, then the snapshot is replaced by a
+ * preference listener whenever they change, so binding the cards doesn't read preferences.
+ */
+data class DisplaySettings private constructor(val isImperial: Boolean) {
+
+    companion object {
+
+        // For Singleton instantiation
+        private val LOCK = Any()
+        @Volatile
+        private var sCurrent: DisplaySettings? = null
+
+        // SharedPreferences only keeps a weak reference to its listeners
+        private var sListener: SharedPreferences.OnSharedPreferenceChangeListener? = null
+
+        @JvmStatic
+        fun get(context: Context): DisplaySettings {
+            sCurrent?.let { return it }
+            synchronized(LOCK) {
+                sCurrent?.let { return it }
+                val prefs = PreferenceManager.getDefaultSharedPreferences(context.applicationContext)
+                val unitsKey = context.getString(R.string.pref_units_key)
+                val listener = SharedPreferences.OnSharedPreferenceChangeListener { sp, key ->
+                    if (key == unitsKey) sCurrent = read(sp, unitsKey)
+                }
+                prefs.registerOnSharedPreferenceChangeListener(listener)
+                sListener = listener
+                val settings = read(prefs, unitsKey)
+                sCurrent = settings
+                return settings
+            }
+        }
+
+        /** Saves the unit preference. The snapshot is updated right away, not on the listener. */
+        @JvmStatic
+        fun setImperial(context: Context, isImperial: Boolean) {
+            val prefs = PreferenceManager.getDefaultSharedPreferences(context.applicationContext)
+            prefs.edit().putBoolean(context.getString(R.string.pref_units_key), isImperial).apply()
+            sCurrent = DisplaySettings(isImperial)
+        }
+
+        private fun read(sp: SharedPreferences, unitsKey: String) =
+            DisplaySettings(sp.getBoolean(unitsKey, CityData.IS_IMPERIAL_UNITS_DEFAULT))
+    }
+}
@@ -2,6 +2,7 @@
 package com.craiovadata.android.sunshine.utilities
 
 import android.content.Context
+import com.craiovadata.android.sunshine.data.database.Freshness
 import com.craiovadata.android.sunshine.data.database.MyDatabase
 import com.craiovadata.android.sunshine.data.database.Repository
 import com.craiovadata.android.sunshine.data.network.NetworkDataSource
@@ -21,7 +22,8 @@ object InjectorUtils {
         return Repository.getInstance(
             myDatabase.weatherDao()!!,
             networkDataSource,
-            executors)
+            executors,
+            Freshness.getInstance(context.applicationContext))
 
     }
 
@@ -42,6 +44,6 @@ object InjectorUtils {
     fun provideMainActivityViewModelFactory(context: Context): ViewModelFactory {
         val repository =
             provideRepository(context.applicationContext)
-        return ViewModelFactory(repository)
+        return ViewModelFactory(repository, context.applicationContext)
     }
 }
\ No newline at end of file
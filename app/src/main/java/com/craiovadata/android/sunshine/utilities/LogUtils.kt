@@ -4,13 +4,11 @@ import android.content.Context
 import android.content.Context.MODE_PRIVATE
 import android.view.View
 import android.widget.LinearLayout
-import com.android.volley.Request
-import com.android.volley.toolbox.StringRequest
-import com.android.volley.toolbox.Volley
 import com.craiovadata.android.sunshine.BuildConfig
 import com.craiovadata.android.sunshine.CityData
 import com.craiovadata.android.sunshine.CityData.isTestMode
 import com.craiovadata.android.sunshine.R
+import com.craiovadata.android.sunshine.data.network.NetworkUtils
 import com.craiovadata.android.sunshine.ui.models.WeatherEntry
 import com.craiovadata.android.sunshine.ui.main.MainActivity
 import kotlinx.android.synthetic.main.content_main.view.*
@@ -18,18 +16,22 @@ import org.json.JSONException
 import org.json.JSONObject
 import timber.log.Timber
 import java.text.SimpleDateFormat
+import java.time.Instant
 import java.util.*
 
 object LogUtils {
 
+    private const val PREF_CITY_NAME_KEY = "owm_city_name"
+
     @JvmStatic
     fun logEntries(context: Context, entries: List<WeatherEntry>) {
         if (!BuildConfig.DEBUG) return
-        val simpleDateFormat = CityData.getFormatterCityTZ("HH:mm  dd MMM")
+        val formatter = CityData.getCityFormatter("HH:mm  dd MMM")
 
+        val settings = DisplaySettings.get(context)
         entries.forEachIndexed { i, entry ->
-            val date = simpleDateFormat.format(entry.date.time)
-            val temperature = SunshineWeatherUtils.formatTemperature(context, entry.temperature)
+            val date = formatter.format(Instant.ofEpochMilli(entry.date))
+            val temperature = SunshineWeatherUtils.formatTemperature(context, entry.temperature, settings)
             log("entry[$i] $date  $temperature isCW-${entry.isCurrentWeather} " +
                         "id-${entry.date} "
             )
@@ -52,51 +54,47 @@ object LogUtils {
                 "&key=${context.getString(R.string.GOOGLE_API_KEY)}"
         log("timezone check: $url")
 
-        // Request a string response from the provided URL.
-        val stringRequest = StringRequest(
-            Request.Method.GET, url,
-            { response ->
-
-                var warningText: String? = null
-                try {
-                    val jsonObject = JSONObject(response)
-                    log("timezoneAPI: $jsonObject")
-                    val responseStatus = jsonObject.getString("status")
-                    if (responseStatus == "OK") {
-                        val timeZoneId = jsonObject.getString("timeZoneId")
-                        if (timeZoneId == CityData.TIME_ZONE_ID) {
-                            log("verification successful - timezone is OK")
-                        } else {
-                            warningText =
-                                "error timezoneId should be: $timeZoneId"
-                        }
+        NetworkUtils.getResponseFromHttpUrl(context, url) { httpResponse ->
+            val response = httpResponse?.body
+            if (response == null) {
+                layoutAttention.visibility = View.VISIBLE
+                val warningText = "timezoneAPI: volley error"
+                layoutAttention.textViewWarnTimezone.text = warningText
+                layoutAttention.buttonWarning.setOnClickListener {
+                    layoutAttention.visibility = View.GONE
+                }
+                return@getResponseFromHttpUrl
+            }
+
+            var warningText: String? = null
+            try {
+                val jsonObject = JSONObject(response)
+                log("timezoneAPI: $jsonObject")
+                val responseStatus = jsonObject.getString("status")
+                if (responseStatus == "OK") {
+                    val timeZoneId = jsonObject.getString("timeZoneId")
+                    if (timeZoneId == CityData.TIME_ZONE_ID) {
+                        log("verification successful - timezone is OK")
                     } else {
-                        warningText = "timezoneAPI -> status: $responseStatus"
+                        warningText =
+                            "error timezoneId should be: $timeZoneId"
                     }
-                } catch (e: JSONException) {
-                    e.printStackTrace()
-                    warningText = "timezoneAPI -> JSONException while parsing the response"
+                } else {
+                    warningText = "timezoneAPI -> status: $responseStatus"
                 }
+            } catch (e: JSONException) {
+                e.printStackTrace()
+                warningText = "timezoneAPI -> JSONException while parsing the response"
+            }
 
-                if (warningText != null) {
-                    layoutAttention.visibility = View.VISIBLE
-                    layoutAttention.textViewWarnTimezone.text = warningText
-                    layoutAttention.buttonWarning.setOnClickListener {
-                        layoutAttention.visibility = View.GONE
-                    }
-                }
-            },
-            {
+            if (warningText != null) {
                 layoutAttention.visibility = View.VISIBLE
-                val warningText = "timezoneAPI: volley error"
                 layoutAttention.textViewWarnTimezone.text = warningText
                 layoutAttention.buttonWarning.setOnClickListener {
                     layoutAttention.visibility = View.GONE
                 }
-            })
-
-        val queue = Volley.newRequestQueue(context)
-        queue.add(stringRequest)
+            }
+        }
     }
 
 
@@ -119,6 +117,16 @@ object LogUtils {
         pref.edit().putString(MainActivity.PREF_SYNC_KEY, savedTxt).apply()
     }
 
+    /* The city name OWM reports with the current weather. Kept out of the weather table */
+    fun saveCityName(context: Context, cityName: String) {
+        if (!isTestMode || cityName.isEmpty()) return
+        context.getSharedPreferences("_", MODE_PRIVATE).edit()
+            .putString(PREF_CITY_NAME_KEY, cityName).apply()
+    }
+
+    fun getSavedCityName(context: Context): String =
+        context.getSharedPreferences("_", MODE_PRIVATE).getString(PREF_CITY_NAME_KEY, "") ?: ""
+
     fun log(msg: String) {
         if (!isTestMode) return
 //        Log.d("log Dan", msg)
@@ -13,6 +13,7 @@ import androidx.core.app.NotificationCompat.PRIORITY_MIN
 import androidx.preference.PreferenceManager
 import com.craiovadata.android.sunshine.CityData.getBackResId
 import com.craiovadata.android.sunshine.R
+import com.craiovadata.android.sunshine.ui.models.DisplayModels
 import com.craiovadata.android.sunshine.ui.models.WeatherEntry
 import com.craiovadata.android.sunshine.ui.main.MainActivity
 import com.craiovadata.android.sunshine.utilities.ForegroundListener.Companion.isBackground
@@ -73,11 +74,12 @@ object NotifUtils {
         val backgrResourceId = getBackResId(context)
         val largeIcon = BitmapFactory.decodeResource(context.resources, backgrResourceId)
 
-        val smallIconId = SunshineWeatherUtils.getLargeArtResourceIdForIconCode(entry.iconCodeOWM)
+        val smallIconId = SunshineWeatherUtils.getLargeArtResourceIdForIconCode(entry.iconCode)
         val chanelId = context.getString(R.string.norif_channel_id)
 
-        val titleTxt = SunshineWeatherUtils.formatTemperature(context, entry.temperature)
-        val contentTxt = SunshineWeatherUtils.getStringForWeatherCondition(context, entry.weatherId)
+        val display = DisplayModels.forWeather(context, entry, DisplaySettings.get(context))
+        val titleTxt = display.temperature
+        val contentTxt = display.description
 
         val builder = NotificationCompat.Builder(context, chanelId)
             .setSmallIcon(smallIconId)
@@ -1,9 +1,8 @@
 package com.craiovadata.android.sunshine.utilities
 
 import android.content.Context
-import androidx.preference.PreferenceManager
+import android.content.res.Configuration
 import android.util.Log
-import com.craiovadata.android.sunshine.CityData
 import com.craiovadata.android.sunshine.R
 
 /**
@@ -20,16 +19,18 @@ object SunshineWeatherUtils {
      * temperature conversion if necessary. It will also format the temperature so that no
      * decimal points show. Temperatures will be formatted to the following form: "21°"
      *
-     * @param context     Android Context to access preferences and resources
+     * @param context     Android Context to access resources
      * @param temperature Temperature in degrees Celsius (°C)
+     * @param settings    Display settings, for the units
      * @return Formatted temperature String in the following form:
      * "21°"
      */
     fun formatTemperature(
         context: Context,
-        temperature: Double
+        temperature: Double,
+        settings: DisplaySettings
     ): String {
-        val mTemperature = adaptTemperature(context, temperature)
+        val mTemperature = adaptTemperature(temperature, settings)
         val roundedTemp = mTemperature.toInt().toFloat()
         val temperatureFormatResourceId = R.string.format_temperature
         /* For presentation, assume the user doesn't care about tenths of a degree. */return String.format(
@@ -39,23 +40,15 @@ object SunshineWeatherUtils {
     }
 
     fun adaptTemperature(
-        context: Context,
-        temperature: Double
+        temperature: Double,
+        settings: DisplaySettings
     ): Double {
-        if (isImperialSystem(context)) {
+        if (settings.isImperial) {
             return celsiusToFahrenheit(temperature)
         }
         return temperature
     }
 
-    private fun isImperialSystem(context: Context): Boolean {
-        val sp =
-            PreferenceManager.getDefaultSharedPreferences(context)
-        val key = context.getString(R.string.pref_units_key)
-        val defaultImperial = CityData.IS_IMPERIAL_UNITS_DEFAULT
-        return sp.getBoolean(key, defaultImperial)
-    }
-
     private fun celsiusToFahrenheit(temperatureInCelsius: Double): Double {
         return temperatureInCelsius * 1.8 + 32
     }
@@ -64,11 +57,12 @@ object SunshineWeatherUtils {
     fun getFormattedWind(
         context: Context,
         windSpeed_m_s: Double,
-        degrees: Double
+        degrees: Double,
+        settings: DisplaySettings
     ): String {
         var windFormat = R.string.format_wind_kmh
         var windSpeed = (windSpeed_m_s * 3.6f).toFloat() // transf in km/h
-        if (isImperialSystem(context)) {
+        if (settings.isImperial) {
             windFormat = R.string.format_wind_mph
             windSpeed *= .6213f // transf in miles/hour
         }
@@ -95,82 +89,106 @@ object SunshineWeatherUtils {
         return String.format(context.getString(windFormat), windSpeed, direction)
     }
 
+    /* OWM condition codes go from 200 to 962, the tables below are indexed by weatherId - 200 */
+    private const val FIRST_CONDITION = 200
+    private const val LAST_CONDITION = 962
+    private const val CONDITION_COUNT = LAST_CONDITION - FIRST_CONDITION + 1
+
+    /* 0 where the code has no string of its own, see condition_unknown */
+    private val STRING_FOR_CONDITION = IntArray(CONDITION_COUNT)
+    private val SMALL_ART_FOR_CONDITION = IntArray(CONDITION_COUNT) { R.drawable.ic_storm }
+    private val LARGE_ART_FOR_CONDITION = IntArray(CONDITION_COUNT) { R.drawable.art_storm }
+
+    init {
+        fun strings(vararg pairs: Pair<Int, Int>) =
+            pairs.forEach { (weatherId, stringId) -> STRING_FOR_CONDITION[weatherId - FIRST_CONDITION] = stringId }
+        fun art(weatherIds: IntRange, small: Int, large: Int) = weatherIds.forEach {
+            SMALL_ART_FOR_CONDITION[it - FIRST_CONDITION] = small
+            LARGE_ART_FOR_CONDITION[it - FIRST_CONDITION] = large
+        }
+
+        (200..232).forEach { strings(it to R.string.condition_2xx) }
+        (300..321).forEach { strings(it to R.string.condition_3xx) }
+        strings(
+            500 to R.string.condition_500, 501 to R.string.condition_501,
+            502 to R.string.condition_502, 503 to R.string.condition_503,
+            504 to R.string.condition_504, 511 to R.string.condition_511,
+            520 to R.string.condition_520, 521 to R.string.condition_521,
+            522 to R.string.condition_522, 531 to R.string.condition_531,
+            600 to R.string.condition_600, 601 to R.string.condition_601,
+            602 to R.string.condition_602, 611 to R.string.condition_611,
+            612 to R.string.condition_612, 613 to R.string.condition_613,
+            615 to R.string.condition_615, 616 to R.string.condition_616,
+            620 to R.string.condition_620, 621 to R.string.condition_621,
+            622 to R.string.condition_622, 701 to R.string.condition_701,
+            711 to R.string.condition_711, 721 to R.string.condition_721,
+            731 to R.string.condition_731, 741 to R.string.condition_741,
+            751 to R.string.condition_751, 761 to R.string.condition_761,
+            762 to R.string.condition_762, 771 to R.string.condition_771,
+            781 to R.string.condition_781, 800 to R.string.condition_800,
+            801 to R.string.condition_801, 802 to R.string.condition_802,
+            803 to R.string.condition_803, 804 to R.string.condition_804,
+            900 to R.string.condition_900, 901 to R.string.condition_901,
+            902 to R.string.condition_902, 903 to R.string.condition_903,
+            904 to R.string.condition_904, 905 to R.string.condition_905,
+            906 to R.string.condition_906, 951 to R.string.condition_951,
+            952 to R.string.condition_952, 953 to R.string.condition_953,
+            954 to R.string.condition_954, 955 to R.string.condition_955,
+            956 to R.string.condition_956, 957 to R.string.condition_957,
+            958 to R.string.condition_958, 959 to R.string.condition_959,
+            960 to R.string.condition_960, 961 to R.string.condition_961,
+            962 to R.string.condition_962
+        )
+
+        // Codes without art of their own (storms, 762, 771, 781, 900..906, 958..962) keep the storm art
+        art(300..321, R.drawable.ic_light_rain, R.drawable.art_light_rain)
+        art(500..504, R.drawable.ic_rain, R.drawable.art_rain)
+        art(511..511, R.drawable.ic_snow, R.drawable.art_snow)
+        art(520..531, R.drawable.ic_rain, R.drawable.art_rain)
+        art(600..622, R.drawable.ic_snow, R.drawable.art_snow)
+        art(701..761, R.drawable.ic_fog, R.drawable.art_fog)
+        art(800..800, R.drawable.ic_clear, R.drawable.art_clear)
+        art(801..801, R.drawable.ic_light_clouds, R.drawable.art_light_clouds)
+        art(802..804, R.drawable.ic_cloudy, R.drawable.art_clouds)
+        art(951..957, R.drawable.ic_clear, R.drawable.art_clear)
+    }
+
+    /* Condition strings of the configuration they were loaded for, filled in as they are used */
+    private class ConditionStrings(val configuration: Configuration) {
+        val strings = arrayOfNulls<String>(CONDITION_COUNT)
+    }
+
+    @Volatile
+    private var sConditionStrings: ConditionStrings? = null
+
+    private fun conditionIndex(weatherId: Int): Int =
+        if (weatherId in FIRST_CONDITION..LAST_CONDITION) weatherId - FIRST_CONDITION else -1
+
     /**
      * Helper method to provide the string according to the weather
-     * condition _id returned by the OpenWeatherMap call.
+     * condition _id returned by the OpenWeatherMap call. Strings are cached until the
+     * configuration (e.g. the locale) changes.
      *
      * @param context   Android context
      * @param weatherId from OpenWeatherMap API response
      * See http://openweathermap.org/weather-conditions for a list of all IDs
-     * @return String for the weather condition, null if no relation is found.
+     * @return String for the weather condition, condition_unknown if no relation is found.
      */
     fun getStringForWeatherCondition(
         context: Context,
         weatherId: Int
     ): String {
-        val stringId: Int = if (weatherId in 200..232) {
-            R.string.condition_2xx
-        } else if (weatherId in 300..321) {
-            R.string.condition_3xx
-        } else when (weatherId) {
-            500 -> R.string.condition_500
-            501 -> R.string.condition_501
-            502 -> R.string.condition_502
-            503 -> R.string.condition_503
-            504 -> R.string.condition_504
-            511 -> R.string.condition_511
-            520 -> R.string.condition_520
-            521 -> R.string.condition_521
-            522 -> R.string.condition_522
-            531 -> R.string.condition_531
-            600 -> R.string.condition_600
-            601 -> R.string.condition_601
-            602 -> R.string.condition_602
-            611 -> R.string.condition_611
-            612 -> R.string.condition_612
-            613 -> R.string.condition_613
-            615 -> R.string.condition_615
-            616 -> R.string.condition_616
-            620 -> R.string.condition_620
-            621 -> R.string.condition_621
-            622 -> R.string.condition_622
-            701 -> R.string.condition_701
-            711 -> R.string.condition_711
-            721 -> R.string.condition_721
-            731 -> R.string.condition_731
-            741 -> R.string.condition_741
-            751 -> R.string.condition_751
-            761 -> R.string.condition_761
-            762 -> R.string.condition_762
-            771 -> R.string.condition_771
-            781 -> R.string.condition_781
-            800 -> R.string.condition_800
-            801 -> R.string.condition_801
-            802 -> R.string.condition_802
-            803 -> R.string.condition_803
-            804 -> R.string.condition_804
-            900 -> R.string.condition_900
-            901 -> R.string.condition_901
-            902 -> R.string.condition_902
-            903 -> R.string.condition_903
-            904 -> R.string.condition_904
-            905 -> R.string.condition_905
-            906 -> R.string.condition_906
-            951 -> R.string.condition_951
-            952 -> R.string.condition_952
-            953 -> R.string.condition_953
-            954 -> R.string.condition_954
-            955 -> R.string.condition_955
-            956 -> R.string.condition_956
-            957 -> R.string.condition_957
-            958 -> R.string.condition_958
-            959 -> R.string.condition_959
-            960 -> R.string.condition_960
-            961 -> R.string.condition_961
-            962 -> R.string.condition_962
-            else -> return context.getString(R.string.condition_unknown, weatherId)
+        val index = conditionIndex(weatherId)
+        val stringId = if (index >= 0) STRING_FOR_CONDITION[index] else 0
+        if (stringId == 0) return context.getString(R.string.condition_unknown, weatherId)
+
+        val configuration = context.resources.configuration
+        var cache = sConditionStrings
+        if (cache == null || cache.configuration != configuration) {
+            cache = ConditionStrings(Configuration(configuration))
+            sConditionStrings = cache
         }
-        return context.getString(stringId)
+        return cache.strings[index] ?: context.getString(stringId).also { cache.strings[index] = it }
     }
 
     /**
@@ -186,78 +204,67 @@ object SunshineWeatherUtils {
      *
      * @param weatherId from OpenWeatherMap API response
      * See http://openweathermap.org/weather-conditions for a list of all IDs
-     * @return resource _id for the corresponding iconCodeOWM. -city_1 if no relation is found.
+     * @return resource _id for the corresponding iconCodeOWM, the storm icon if no relation is found.
      */
-    fun getSmallArtResourceIdForWeatherCondition(weatherId: Int): Int { /*
-         * Based on weather code data for Open Weather Map.
-         */
-        if (weatherId in 200..232) {
-            return R.drawable.ic_storm
-        } else if (weatherId in 300..321) {
-            return R.drawable.ic_light_rain
-        } else if (weatherId in 500..504) {
-            return R.drawable.ic_rain
-        } else if (weatherId == 511) {
-            return R.drawable.ic_snow
-        } else if (weatherId in 520..531) {
-            return R.drawable.ic_rain
-        } else if (weatherId in 600..622) {
-            return R.drawable.ic_snow
-        } else if (weatherId in 701..761) {
-            return R.drawable.ic_fog
-        } else if (weatherId == 761 || weatherId == 771 || weatherId == 781) {
-            return R.drawable.ic_storm
-        } else if (weatherId == 800) {
-            return R.drawable.ic_clear
-        } else if (weatherId == 801) {
-            return R.drawable.ic_light_clouds
-        } else if (weatherId in 802..804) {
-            return R.drawable.ic_cloudy
-        } else if (weatherId in 900..906) {
-            return R.drawable.ic_storm
-        } else if (weatherId in 958..962) {
-            return R.drawable.ic_storm
-        } else if (weatherId in 951..957) {
-            return R.drawable.ic_clear
-        }
-        Log.e(LOG_TAG, "Unknown Weather: $weatherId")
-        return R.drawable.ic_storm
-    }
+    fun getSmallArtResourceIdForWeatherCondition(weatherId: Int): Int =
+        SMALL_ART_FOR_CONDITION.getOrElse(conditionIndex(weatherId)) { R.drawable.ic_storm }
 
-    fun getSmallArtResourceIdForIconCode(iconCode: String): Int {
-        when (iconCode) {
-            "01d" -> return R.drawable.ic_clear
-            "01n" -> return R.drawable.ic_clear_n
-            "02d" -> return R.drawable.ic_light_clouds
-            "02n" -> return R.drawable.ic_light_clouds_n
-            "03d", "03n", "04d", "04n" -> return R.drawable.ic_cloudy
-            "09d", "09n" -> return R.drawable.ic_light_rain
-            "10d", "10n" -> return R.drawable.ic_rain
-            "11d", "11n" -> return R.drawable.ic_storm
-            "13d", "13n" -> return R.drawable.ic_snow
-            "50d", "50n" -> return R.drawable.ic_fog
-        }
-        Log.e(LOG_TAG, "Unknown Weather: $iconCode")
-        return R.drawable.ic_storm
+    /* OWM icon codes, indexed by the value stored in WeatherEntry.iconCode. Append only, stored values index it */
+    val OWM_ICON_CODES = arrayOf(
+        "01d", "01n", "02d", "02n", "03d", "03n", "04d", "04n", "09d", "09n",
+        "10d", "10n", "11d", "11n", "13d", "13n", "50d", "50n"
+    )
+
+    private val SMALL_ART_FOR_ICON_CODE = intArrayOf(
+        R.drawable.ic_clear, R.drawable.ic_clear_n,
+        R.drawable.ic_light_clouds, R.drawable.ic_light_clouds_n,
+        R.drawable.ic_cloudy, R.drawable.ic_cloudy, R.drawable.ic_cloudy, R.drawable.ic_cloudy,
+        R.drawable.ic_light_rain, R.drawable.ic_light_rain,
+        R.drawable.ic_rain, R.drawable.ic_rain,
+        R.drawable.ic_storm, R.drawable.ic_storm,
+        R.drawable.ic_snow, R.drawable.ic_snow,
+        R.drawable.ic_fog, R.drawable.ic_fog
+    )
+
+    private val LARGE_ART_FOR_ICON_CODE = intArrayOf(
+        R.drawable.art_clear, R.drawable.art_clear_n,
+        R.drawable.art_light_clouds, R.drawable.art_light_clouds_n,
+        R.drawable.art_clouds, R.drawable.art_clouds, R.drawable.art_clouds, R.drawable.art_clouds,
+        R.drawable.art_light_rain, R.drawable.art_light_rain,
+        R.drawable.art_rain, R.drawable.art_rain,
+        R.drawable.art_storm, R.drawable.art_storm,
+        R.drawable.art_snow, R.drawable.art_snow,
+        R.drawable.art_fog, R.drawable.art_fog
+    )
+
+    private val ICON_CODES_BY_OWM_CODE = HashMap<String, Int>(OWM_ICON_CODES.size * 2).apply {
+        OWM_ICON_CODES.forEachIndexed { iconCode, owmIconCode -> put(owmIconCode, iconCode) }
     }
 
-    fun getLargeArtResourceIdForIconCode(iconCode: String): Int {
-        when (iconCode) {
-            "01d" -> return R.drawable.art_clear
-            "01n" -> return R.drawable.art_clear_n
-            "02d" -> return R.drawable.art_light_clouds
-            "02n" -> return R.drawable.art_light_clouds_n
-            "03d", "03n", "04d", "04n" -> return R.drawable.art_clouds
-            "09d", "09n" -> return R.drawable.art_light_rain
-            "10d", "10n" -> return R.drawable.art_rain
-            "11d", "11n" -> return R.drawable.art_storm
-            "13d", "13n" -> return R.drawable.art_snow
-            "50d", "50n" -> return R.drawable.art_fog
+    const val ICON_UNKNOWN = -1
+    // "01d"
+    const val ICON_CLEAR_DAY = 0
+
+    /**
+     * Encodes an OWM icon code ("01d", "10n", ...) as the small integer stored in the database.
+     *
+     * @return index of the code, or [ICON_UNKNOWN]
+     */
+    fun getIconCode(owmIconCode: String): Int {
+        val iconCode = ICON_CODES_BY_OWM_CODE[owmIconCode]
+        if (iconCode == null) {
+            Log.e(LOG_TAG, "Unknown Weather: $owmIconCode")
+            return ICON_UNKNOWN
         }
-        Log.e(LOG_TAG, "Unknown Weather: $iconCode")
-        return R.drawable.art_storm
+        return iconCode
     }
 
+    fun getSmallArtResourceIdForIconCode(iconCode: Int): Int =
+        SMALL_ART_FOR_ICON_CODE.getOrElse(iconCode) { R.drawable.ic_storm }
+
+    fun getLargeArtResourceIdForIconCode(iconCode: Int): Int =
+        LARGE_ART_FOR_ICON_CODE.getOrElse(iconCode) { R.drawable.art_storm }
+
     /**
      * Helper method to provide the art resource ID according to the weather condition ID returned
      * by the OpenWeatherMap call. This method is very similar to
@@ -271,43 +278,9 @@ object SunshineWeatherUtils {
      *
      * @param weatherId from OpenWeatherMap API response
      * See http://openweathermap.org/weather-conditions for a list of all IDs
-     * @return resource ID for the corresponding iconCodeOWM. -city_1 if no relation is found.
+     * @return resource ID for the corresponding iconCodeOWM, the storm art if no relation is found.
      */
-    fun getLargeArtResourceIdForWeatherCondition(weatherId: Int): Int { /*
-         * Based on weather code data for Open Weather Map.
-         */
-        if (weatherId in 200..232) {
-            return R.drawable.art_storm
-        } else if (weatherId in 300..321) {
-            return R.drawable.art_light_rain
-        } else if (weatherId in 500..504) {
-            return R.drawable.art_rain
-        } else if (weatherId == 511) {
-            return R.drawable.art_snow
-        } else if (weatherId in 520..531) {
-            return R.drawable.art_rain
-        } else if (weatherId in 600..622) {
-            return R.drawable.art_snow
-        } else if (weatherId in 701..761) {
-            return R.drawable.art_fog
-        } else if (weatherId == 761 || weatherId == 771 || weatherId == 781) {
-            return R.drawable.art_storm
-        } else if (weatherId == 800) {
-            return R.drawable.art_clear
-        } else if (weatherId == 801) {
-            return R.drawable.art_light_clouds
-        } else if (weatherId in 802..804) {
-            return R.drawable.art_clouds
-        } else if (weatherId in 900..906) {
-            return R.drawable.art_storm
-        } else if (weatherId in 958..962) {
-            return R.drawable.art_storm
-        } else if (weatherId in 951..957) {
-            return R.drawable.art_clear
-        }
-        Log.e(LOG_TAG, "Unknown Weather: $weatherId")
-        return R.drawable.art_storm
-    }
-
+    fun getLargeArtResourceIdForWeatherCondition(weatherId: Int): Int =
+        LARGE_ART_FOR_CONDITION.getOrElse(conditionIndex(weatherId)) { R.drawable.art_storm }
 
 }
\ No newline at end of file
@@ -0,0 +1,46 @@
+#!/usr/bin/env bash
+#
+# Regenerates app/schemas/.../{9,10,11,12}.json with Room's own schema export, by building the
+# commit that introduced each database version. Versions 9 to 11 predate exportSchema, so the
+# export is switched on in a throwaway worktree before building.
+#
+# Needs the same environment as a normal build (Android SDK, Google Maven). Run from anywhere
+# inside the repository, then review and commit the changed JSON files.
+
+set -euo pipefail
+
+ROOT=$(git rev-parse --show-toplevel)
+SCHEMAS=app/schemas/com.craiovadata.android.sunshine.data.database.MyDatabase
+DATABASE=app/src/main/java/com/craiovadata/android/sunshine/data/database/MyDatabase.kt
+
+# database version -> commit that set it
+VERSIONS=(
+    "9 bc96cc5"
+    "10 7b8e26c"
+    "11 0824e4f"
+    "12 HEAD"
+)
+
+WORKTREE=$(mktemp -d)
+trap 'git -C "$ROOT" worktree remove --force "$WORKTREE" 2>/dev/null || true' EXIT
+
+for entry in "${VERSIONS[@]}"; do
+    read -r version commit <<< "$entry"
+    echo "Exporting schema $version from $commit"
+
+    git -C "$ROOT" worktree remove --force "$WORKTREE" 2>/dev/null || true
+    git -C "$ROOT" worktree add --detach "$WORKTREE" "$commit" > /dev/null
+
+    # Turn the export on where it was still off
+    sed -i 's|^//\( *"room.schemaLocation"\)|\1|' "$WORKTREE/app/build.gradle"
+    sed -i 's|exportSchema = false|exportSchema = true|' "$WORKTREE/$DATABASE"
+    cp "$ROOT/local.properties" "$WORKTREE/" 2>/dev/null || true
+    # Room keeps an existing file whose tables match, whatever its identityHash says
+    rm -f "$WORKTREE/$SCHEMAS/$version.json"
+
+    (cd "$WORKTREE" && ./gradlew -q :app:kaptDebugKotlin)
+
+    cp "$WORKTREE/$SCHEMAS/$version.json" "$ROOT/$SCHEMAS/$version.json"
+done
+
+git -C "$ROOT" status --short -- "$SCHEMAS"